@@ -0,0 +1,54 @@
+package cpu;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Tempo de montagem de fontes pequenas (exemplo) e grandes (geradas). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssemblerBench {
+
+    @Param({"exemplo", "50000"})
+    public String source;
+
+    private String src;
+
+    @Setup
+    public void setup() {
+        src = source.equals("exemplo") ? Programs.get("soma") : generate(Integer.parseInt(source));
+    }
+
+    // Até encher os 256 bytes usa instruções; o resto são rótulos, dados e comentários
+    static String generate(int lines) {
+        StringBuilder sb = new StringBuilder();
+        int bytes = 0;
+        for (int i = 0; i < lines; i++) {
+            if (bytes < 240) {
+                switch (i % 3) {
+                    case 0:  sb.append("LOAD V").append(i % 5); break;
+                    case 1:  sb.append("ADDI 7"); break;
+                    default: sb.append("STORE V").append(i % 5);
+                }
+                sb.append('\n');
+                bytes += 2;
+            } else if (i % 2 == 0) {
+                sb.append("L").append(i).append(":\n");
+            } else {
+                sb.append("/ comentário da linha ").append(i).append('\n');
+            }
+        }
+        sb.append("HALT\n");
+        for (int v = 0; v < 5; v++) sb.append("V").append(v).append(", DEC ").append(v).append('\n');
+        return sb.toString();
+    }
+
+    @Benchmark
+    public Assembler.AsmOut assembleWithVars() {
+        return Assembler.assembleWithVars(src, 200);
+    }
+}
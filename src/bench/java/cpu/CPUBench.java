@@ -0,0 +1,106 @@
+package cpu;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vazão do interpretador (instruções por segundo) nos programas de exemplo,
+ * num laço curto e num programa com muitos acessos à memória.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CPUBench {
+    static final int STEPS = 10_000;
+
+    @Param({"soma", "divisao", "laco", "memoria"})
+    public String program;
+
+    private Assembler.AsmOut out;
+    private Snapshot start;
+    private CPU cpu;
+    private TieredEngine jit;
+
+    @Setup
+    public void setup() {
+        out = Assembler.assembleWithVars(Programs.get(program), 200);
+        cpu = new CPU();
+        cpu.io = BufferedIO.generated(i -> 100 + i % 50);
+        cpu.load(out);
+        start = cpu.snapshot();
+        jit = new TieredEngine(cpu);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void step(Blackhole bh) {
+        for (int i = 0; i < STEPS; i++) {
+            if (cpu.halted) cpu.restore(start);
+            bh.consume(cpu.step());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void stepQuiet(Blackhole bh) {
+        for (int i = 0; i < STEPS; i++) {
+            if (cpu.halted) cpu.restore(start);
+            bh.consume(cpu.stepQuiet());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int run() {
+        cpu.setPredecode(false);
+        return runBudget();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int runPredecoded() {
+        cpu.setPredecode(true);
+        return runBudget();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int runTiered() {
+        long left = STEPS;
+        int st = 0;
+        while (left > 0) {
+            if (cpu.halted) {
+                // restore() reescreve a memória por fora do motor: os blocos compilados ficam inválidos
+                cpu.restore(start);
+                jit.invalidateAll();
+            }
+            st = jit.run(left);
+            left -= jit.lastRunSteps;
+        }
+        return st;
+    }
+
+    private int runBudget() {
+        long left = STEPS;
+        int st = 0;
+        while (left > 0) {
+            if (cpu.halted) cpu.restore(start);
+            st = cpu.run(left);
+            left -= cpu.lastRunSteps;
+        }
+        return st;
+    }
+
+    /** reset() + cópia do programa, como ao carregar um exemplo no simulador. */
+    @Benchmark
+    @OperationsPerInvocation(1)
+    public int resetAndLoad() {
+        cpu.load(out);
+        return cpu.mem.get(0);
+    }
+}
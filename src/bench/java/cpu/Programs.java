@@ -0,0 +1,34 @@
+package cpu;
+
+/** Programas usados pelos benchmarks (os exemplos do simulador, uma instrução por linha). */
+final class Programs {
+    private Programs() {}
+
+    static String get(String name) {
+        switch (name) {
+            case "soma":
+                return "LOAD X     / Carrega valor de X\n"
+                        + "ADD  Y     / Soma valor de Y\n"
+                        + "STORE Z    / Salva resultado em Z\n"
+                        + "HALT\n"
+                        + "/ --- Dados ---\n"
+                        + "X, DEC 5\n"
+                        + "Y, DEC 3\n"
+                        + "Z, DEC 0\n";
+            case "divisao":
+                return "IN\nSTORE A\nIN\nSTORE B\nLOADI 0\nSTORE Q\n"
+                        + "LOOP:\nLOAD A\nSUB B\nJN FIM\nSTORE A\nLOAD Q\nADDI 1\nSTORE Q\nJMP LOOP\n"
+                        + "FIM:\nLOAD Q\nOUT\nHALT\n"
+                        + "A, DEC 0\nB, DEC 0\nQ, DEC 0";
+            case "laco":
+                // Conta de 0 a 255 e recomeça, sem parar
+                return "LOOP:\nADDI 1\nJMP LOOP\n";
+            case "memoria":
+                // Soma e copia células em sequência, muitas leituras/escritas por volta
+                return "LOOP:\nLOAD A\nADD B\nSTORE C\nLOAD C\nSUB A\nSTORE B\nADD C\nSTORE A\nJMP LOOP\n"
+                        + "A, DEC 1\nB, DEC 2\nC, DEC 0";
+            default:
+                throw new IllegalArgumentException("Programa desconhecido: " + name);
+        }
+    }
+}
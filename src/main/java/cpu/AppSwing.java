@@ -5,19 +5,40 @@ import com.formdev.flatlaf.FlatLightLaf;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.text.Element;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.text.BadLocationException;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class AppSwing extends JFrame {
     private final CPU cpu = new CPU();
+    private final TraceBuffer trace = new TraceBuffer(1024);
+    private final History history;
     private final Timer timer = new Timer(80, e -> doStep());
 
+    // A tela é redesenhada no máximo FRAME_RATE vezes por segundo, independente da simulação
+    private static final int FRAME_RATE = 30;
+    private final Timer frameTimer = new Timer(1000 / FRAME_RATE, e -> paintFrame());
+    private boolean uiDirty;
+
+    // Modo turbo: a CPU roda numa thread própria e a tela lê o último snapshot publicado
+    private static final long[] TURBO_RATES = {0, 1_000_000, 10_000, 100, 10};
+    private TurboRunner turbo;
+    private long turboStart;
+    private long turboSteps;   // instruções dos turbos anteriores desta execução (um por IN)
+    // Em "Máx" o rastro, o perfil e o detector de laço ficam desligados para run() usar o caminho rápido
+    private LoopDetector turboLoopDetector;
+    private boolean turboFast;
+    private final int[] frameMem = new int[256];
+
     // UI Components
     private final StatCard cardPC  = new StatCard("PC (Counter)", "000");
     private final StatCard cardIR  = new StatCard("IR (Instruc)", "0x00");
@@ -27,22 +48,46 @@ public class AppSwing extends JFrame {
 
     private final JComboBox<String> exampleBox = new JComboBox<>();
     private final JButton btLoad  = new JButton("Carregar");
+    private final JButton btBack  = new JButton("⤴ Voltar");
+    private final JButton btRunBack = new JButton("⏮ Voltar à linha");
     private final JButton btStep  = new JButton("Step ⤵");
     private final JButton btRun   = new JButton("Run ▶");
+    private final JButton btTurbo = new JButton("Turbo ⚡");
+    private final JComboBox<String> turboRate = new JComboBox<>(new String[]{"Máx", "1.000.000/s", "10.000/s", "100/s", "10/s"});
     private final JButton btPause = new JButton("Pause ⏸");
     private final JButton btReset = new JButton("Reset ↺");
     private final JToggleButton btTheme = new JToggleButton("Tema 🌓");
 
-    private final DefaultTableModel memModel = new DefaultTableModel(16, 16) {
-        @Override public boolean isCellEditable(int r, int c) { return false; }
-    };
+    private final MemoryModel memModel = new MemoryModel();
     private final JTable memTable = new JTable(memModel);
 
-    private final JTextArea expl = new JTextArea();
+    // Explicações: anel limitado, exibido numa lista que só formata as linhas visíveis
+    private final StepLog stepLog = new StepLog(5000);
+    private final LogModel logModel = new LogModel();
+    private final JList<String> expl = new JList<>(logModel);
     private final JTextPane codeViewPane = new JTextPane();
 
     private final Map<String, String> examples = new LinkedHashMap<>();
     private Map<Integer, Integer> currentDebugMap = new LinkedHashMap<>();
+    private Map<String, Integer> currentSymbols = Collections.emptyMap();
+
+    // Breakpoints (duplo clique numa linha do código) e watchpoints (botão direito na memória)
+    private final Breakpoints breakpoints = new Breakpoints();
+    private final javax.swing.text.Highlighter.HighlightPainter breakHighlighter =
+            new javax.swing.text.DefaultHighlighter.DefaultHighlightPainter(new Color(229, 57, 53, 70));
+    private final List<Object> breakTags = new ArrayList<>();
+
+    // Perfil: execuções por linha, como tons de calor no código e numa tabela ordenável
+    private final Profiler profiler = new Profiler();
+    private static final int HEAT_LEVELS = 8;
+    private final javax.swing.text.Highlighter.HighlightPainter[] heatPainters =
+            new javax.swing.text.Highlighter.HighlightPainter[HEAT_LEVELS];
+    private final List<Object> heatTags = new ArrayList<>();
+    private long heatTotal = -1;   // profiler.total já desenhado (-1 = redesenhar)
+    private final ProfileModel profileModel = new ProfileModel();
+    private final JTable profileTable = new JTable(profileModel);
+    private final JLabel profileLabel = new JLabel(" ");
+    private String[] currentSourceLines = new String[0];
 
     private final javax.swing.text.Highlighter.HighlightPainter lineHighlighter =
             new javax.swing.text.DefaultHighlighter.DefaultHighlightPainter(new Color(255, 235, 59, 100));
@@ -54,15 +99,22 @@ public class AppSwing extends JFrame {
     private Color colorWrite = new Color(255, 224, 178);
     private Color colorPC = new Color(255, 255, 141);
 
-    private static final Pattern READ_PAT = Pattern.compile("(LOADM|ADDM|SUBM|LOAD) \\[(\\d+)\\]");
-    private static final Pattern WRITE_PAT = Pattern.compile("STORE \\[(\\d+)\\]");
-
     private final JTabbedPane abas = new JTabbedPane();
     private JPanel topPanelRef;
 
     public AppSwing() {
         super("Simulador Educativo de CPU");
         setDefaultCloseOperation(EXIT_ON_CLOSE);
+        cpu.io = new DialogIO(this);
+        cpu.trace = trace;
+        cpu.loopDetector = new LoopDetector(cpu);
+        cpu.breakpoints = breakpoints;
+        cpu.profiler = profiler;
+        for (int i = 0; i < HEAT_LEVELS; i++) {
+            heatPainters[i] = new javax.swing.text.DefaultHighlighter.DefaultHighlightPainter(
+                    new Color(255, 87, 34, 20 + i * 18));
+        }
+        history = new History(cpu);
 
         setupMenu();
         setupTopPanel();
@@ -70,7 +122,7 @@ public class AppSwing extends JFrame {
 
         // --- LAYOUT ---
 
-        JSplitPane bottomSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, createCodePanel(), createLogPanel());
+        JSplitPane bottomSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, createCodePanel(), createSideTabs());
         bottomSplit.setResizeWeight(0.5);
         bottomSplit.setBorder(BorderFactory.createEmptyBorder());
         bottomSplit.setDividerSize(4);
@@ -119,6 +171,7 @@ public class AppSwing extends JFrame {
         JMenu menuFile = new JMenu("Arquivo");
         JMenuItem itemOpen = new JMenuItem("Abrir Código Fonte...");
         JMenuItem itemSave = new JMenuItem("Salvar Código...");
+        JCheckBoxMenuItem itemRecord = new JCheckBoxMenuItem("Gravar Log em Arquivo...");
         JMenuItem itemExit = new JMenuItem("Sair");
 
         itemOpen.setAccelerator(KeyStroke.getKeyStroke("control O"));
@@ -134,16 +187,39 @@ public class AppSwing extends JFrame {
         });
 
         itemSave.addActionListener(e -> FileManager.saveFile(this, EditorTab.getText()));
+        itemRecord.addActionListener(e -> toggleLogRecording(itemRecord));
         itemExit.addActionListener(e -> System.exit(0));
 
         menuFile.add(itemOpen);
         menuFile.add(itemSave);
+        menuFile.add(itemRecord);
         menuFile.addSeparator();
         menuFile.add(itemExit);
         menuBar.add(menuFile);
         setJMenuBar(menuBar);
     }
 
+    // Liga: grava o log já exibido e tudo o que vier depois; desliga: termina o arquivo
+    private void toggleLogRecording(JCheckBoxMenuItem item) {
+        try {
+            if (!item.isSelected()) {
+                stepLog.stopRecording();
+                explain("💾 Gravação do log encerrada.");
+                return;
+            }
+            java.io.File file = FileManager.chooseLogFile(this);
+            if (file == null) {
+                item.setSelected(false);
+                return;
+            }
+            stepLog.record(file.toPath());
+            explain("💾 Gravando o log em " + file.getName());
+        } catch (java.io.IOException ex) {
+            item.setSelected(stepLog.isRecording());
+            JOptionPane.showMessageDialog(this, "Erro ao gravar log: " + ex.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void setupTopPanel() {
         JPanel statsPanel = new JPanel(new GridLayout(1, 5, 10, 0));
         statsPanel.setOpaque(false);
@@ -160,9 +236,16 @@ public class AppSwing extends JFrame {
         exampleBox.setPreferredSize(new Dimension(200, 35));
 
         styleButton(btLoad, null);
+        styleButton(btBack, null);
+        styleButton(btRunBack, null);
+        btRunBack.setToolTipText("Volta até a última execução da linha onde está o cursor no código");
         styleButton(btStep, null);
         styleButton(btRun, new Color(46, 125, 50));
         btRun.setForeground(Color.WHITE);
+        styleButton(btTurbo, new Color(21, 101, 192));
+        btTurbo.setForeground(Color.WHITE);
+        btTurbo.setToolTipText("Executa em segundo plano, sem explicar cada passo");
+        turboRate.setToolTipText("Instruções por segundo no modo turbo (em Máx, sem perfil nem detecção de laço)");
         styleButton(btPause, new Color(255, 143, 0));
         btPause.setForeground(Color.WHITE);
         styleButton(btReset, new Color(198, 40, 40));
@@ -173,8 +256,12 @@ public class AppSwing extends JFrame {
         toolbar.add(exampleBox);
         toolbar.add(btLoad);
         toolbar.add(Box.createHorizontalStrut(15));
+        toolbar.add(btRunBack);
+        toolbar.add(btBack);
         toolbar.add(btStep);
         toolbar.add(btRun);
+        toolbar.add(btTurbo);
+        toolbar.add(turboRate);
         toolbar.add(btPause);
         toolbar.add(btReset);
         toolbar.add(Box.createHorizontalGlue());
@@ -189,6 +276,17 @@ public class AppSwing extends JFrame {
     private JPanel createCodePanel() {
         codeViewPane.setFont(new Font("Consolas", Font.PLAIN, 14));
         codeViewPane.setEditable(false);
+        codeViewPane.setToolTipText("Duplo clique numa linha: liga/desliga breakpoint; botão direito: condição");
+        codeViewPane.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() != 2 || !SwingUtilities.isLeftMouseButton(e)) return;
+                int line = codeLineAt(e.getPoint());
+                if (line >= 0) toggleLineBreakpoint(line);
+            }
+            @Override public void mousePressed(MouseEvent e) { showLineMenu(e); }
+            @Override public void mouseReleased(MouseEvent e) { showLineMenu(e); }
+        });
 
         JPanel p = new JPanel(new BorderLayout());
         p.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY), " 📜 Código Fonte (Execução) "));
@@ -197,10 +295,19 @@ public class AppSwing extends JFrame {
     }
 
     private JPanel createLogPanel() {
-        expl.setEditable(false);
-        expl.setLineWrap(true);
-        expl.setWrapStyleWord(true);
         expl.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        // Altura e largura fixas: a lista não mede cada linha do log
+        expl.setPrototypeCellValue(" ► 000: LOADI 000 → ACC=000 (Z=0, N=0)");
+        expl.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean hasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, hasFocus);
+                setToolTipText(String.valueOf(value));   // mensagens longas não cabem na linha
+                return this;
+            }
+        });
+        ToolTipManager.sharedInstance().registerComponent(expl);
 
         JPanel p = new JPanel(new BorderLayout());
         p.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY), " ℹ️ Explicação do Passo "));
@@ -208,6 +315,132 @@ public class AppSwing extends JFrame {
         return p;
     }
 
+    private JTabbedPane createSideTabs() {
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Explicação", createLogPanel());
+        tabs.addTab("Perfil", createProfilePanel());
+        return tabs;
+    }
+
+    private JPanel createProfilePanel() {
+        profileTable.setAutoCreateRowSorter(true);
+        profileTable.getRowSorter().setSortKeys(Collections.singletonList(new RowSorter.SortKey(1, SortOrder.DESCENDING)));
+        profileTable.setFillsViewportHeight(true);
+        profileTable.getColumnModel().getColumn(0).setPreferredWidth(50);
+        profileTable.getColumnModel().getColumn(1).setPreferredWidth(90);
+        profileTable.getColumnModel().getColumn(2).setPreferredWidth(60);
+        profileTable.getColumnModel().getColumn(3).setPreferredWidth(220);
+        profileTable.setDefaultRenderer(Double.class, new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setHorizontalAlignment(SwingConstants.RIGHT);
+                setText(String.format("%.1f %%", (Double) value));
+            }
+        });
+        profileTable.setToolTipText("Duplo clique: mostra a linha no código");
+        profileTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = profileTable.getSelectedRow();
+                if (e.getClickCount() == 2 && row >= 0) {
+                    showCodeLine(profileModel.lineAt(profileTable.convertRowIndexToModel(row)));
+                }
+            }
+        });
+
+        JButton btClear = new JButton("Zerar");
+        btClear.addActionListener(e -> {
+            stopTurbo();   // a thread do turbo também conta
+            profiler.reset();
+            heatTotal = -1;
+            refreshProfile();
+        });
+
+        JPanel top = new JPanel(new BorderLayout());
+        top.setBorder(new EmptyBorder(4, 6, 4, 6));
+        top.add(profileLabel, BorderLayout.CENTER);
+        top.add(btClear, BorderLayout.EAST);
+
+        JPanel p = new JPanel(new BorderLayout());
+        p.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY), " 🔥 Linhas Mais Executadas "));
+        p.add(top, BorderLayout.NORTH);
+        p.add(new JScrollPane(profileTable));
+        return p;
+    }
+
+    // Põe o cursor na linha (o "Voltar à linha" usa o cursor) e rola até ela
+    private void showCodeLine(int line) {
+        Element root = codeViewPane.getDocument().getDefaultRootElement();
+        if (line < 0 || line >= root.getElementCount()) return;
+        int start = root.getElement(line).getStartOffset();
+        codeViewPane.setCaretPosition(start);
+        try {
+            Rectangle r = codeViewPane.modelToView(start);
+            if (r != null) codeViewPane.scrollRectToVisible(r);
+        } catch (BadLocationException ignored) {}
+    }
+
+    /** Soma o perfil por linha e redesenha a tabela e os tons de calor do código. */
+    private void refreshProfile() {
+        heatTotal = profiler.total;
+        List<Profiler.Line> rows = profiler.lines(currentDebugMap);
+        profileModel.setRows(rows);
+        profileLabel.setText(String.format("Total: %d instruções em %d linhas", profiler.total, rows.size()));
+
+        javax.swing.text.Highlighter h = codeViewPane.getHighlighter();
+        for (Object tag : heatTags) h.removeHighlight(tag);
+        heatTags.clear();
+        if (rows.isEmpty()) return;
+        long max = rows.get(0).count;
+        Element root = codeViewPane.getDocument().getDefaultRootElement();
+        for (Profiler.Line l : rows) {
+            if (l.line >= root.getElementCount()) continue;
+            int level = (int) ((HEAT_LEVELS - 1) * l.count / max);
+            Element el = root.getElement(l.line);
+            try {
+                heatTags.add(h.addHighlight(el.getStartOffset(), el.getEndOffset(), heatPainters[level]));
+            } catch (BadLocationException ignored) {}
+        }
+    }
+
+    private final class ProfileModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private final String[] cols = {"Linha", "Execuções", "%", "Código"};
+        private List<Profiler.Line> rows = Collections.emptyList();
+
+        void setRows(List<Profiler.Line> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        int lineAt(int row) { return rows.get(row).line; }
+
+        @Override public int getRowCount() { return rows.size(); }
+        @Override public int getColumnCount() { return cols.length; }
+        @Override public String getColumnName(int c) { return cols[c]; }
+
+        @Override
+        public Class<?> getColumnClass(int c) {
+            switch (c) {
+                case 0: return Integer.class;
+                case 1: return Long.class;
+                case 2: return Double.class;
+                default: return String.class;
+            }
+        }
+
+        @Override
+        public Object getValueAt(int r, int c) {
+            Profiler.Line l = rows.get(r);
+            switch (c) {
+                case 0: return l.line + 1;
+                case 1: return l.count;
+                case 2: return l.percent;
+                default: return l.line < currentSourceLines.length ? currentSourceLines[l.line].trim() : "";
+            }
+        }
+    }
+
     private void styleButton(AbstractButton b, Color bg) {
         b.putClientProperty("JButton.buttonType", "roundRect");
         b.setFocusPainted(false);
@@ -220,8 +453,7 @@ public class AppSwing extends JFrame {
     }
 
     private void setupMemoryTable() {
-        String[] heads = "0,1,2,3,4,5,6,7,8,9,A,B,C,D,E,F".split(",");
-        memModel.setColumnIdentifiers(heads);
+        frameTimer.setInitialDelay(0);
 
         memTable.setRowHeight(28);
         memTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
@@ -250,18 +482,23 @@ public class AppSwing extends JFrame {
                     if (c.getBackground() == null) c.setBackground(new Color(248, 248, 248));
                 }
 
-                if (addr == lastReadAddr) {
+                // Usa os marcadores do último quadro, não o estado atual da CPU
+                if (addr == memModel.shownRead) {
                     c.setBackground(colorRead);
                     c.setForeground(Color.BLACK);
-                } else if (addr == lastWriteAddr) {
+                } else if (addr == memModel.shownWrite) {
                     c.setBackground(colorWrite);
                     c.setForeground(Color.BLACK);
                 }
 
-                if (addr == cpu.PC) {
+                if (addr == memModel.shownPC) {
                     c.setBackground(colorPC);
                     c.setForeground(Color.BLACK);
                     setBorder(BorderFactory.createLineBorder(Color.ORANGE, 2));
+                } else if (breakpoints.has(Breakpoints.EXEC, addr)) {
+                    setBorder(BorderFactory.createLineBorder(new Color(229, 57, 53), 2));
+                } else if (breakpoints.has(Breakpoints.READ, addr) || breakpoints.has(Breakpoints.WRITE, addr)) {
+                    setBorder(BorderFactory.createLineBorder(new Color(30, 136, 229), 2));
                 } else {
                     setBorder(noFocusBorder);
                 }
@@ -270,17 +507,166 @@ public class AppSwing extends JFrame {
                 return c;
             }
         });
+
+        memTable.addMouseListener(new MouseAdapter() {
+            @Override public void mousePressed(MouseEvent e) { showWatchMenu(e); }
+            @Override public void mouseReleased(MouseEvent e) { showWatchMenu(e); }
+        });
+        memTable.setToolTipText("Botão direito: breakpoint ou watchpoint no endereço");
+    }
+
+    private void showWatchMenu(MouseEvent e) {
+        if (!e.isPopupTrigger()) return;
+        int r = memTable.rowAtPoint(e.getPoint()), c = memTable.columnAtPoint(e.getPoint());
+        if (r < 0 || c < 0) return;
+        int addr = r * 16 + c;
+        String name = String.format("[%03d]", addr);
+        for (Map.Entry<String, Integer> s : currentSymbols.entrySet()) {
+            if (s.getValue() == addr) { name = s.getKey() + " " + name; break; }
+        }
+        JPopupMenu menu = new JPopupMenu();
+        menu.add(breakItem("Breakpoint em " + name, Breakpoints.EXEC, addr));
+        menu.add(breakItem("Parar ao ler " + name, Breakpoints.READ, addr));
+        menu.add(breakItem("Parar ao escrever " + name, Breakpoints.WRITE, addr));
+        menu.addSeparator();
+        JMenuItem cond = new JMenuItem("Condição do breakpoint em " + name + "...");
+        final String where = name;
+        cond.addActionListener(ev -> editCondition(addr, where));
+        menu.add(cond);
+        menu.show(memTable, e.getX(), e.getY());
+    }
+
+    private JCheckBoxMenuItem breakItem(String text, int kind, int addr) {
+        JCheckBoxMenuItem item = new JCheckBoxMenuItem(text, breakpoints.has(kind, addr));
+        item.addActionListener(e -> {
+            stopTurbo();   // a thread do turbo lê os mapas de bits
+            breakpoints.set(kind, addr, item.isSelected());
+            memModel.cellChanged(addr);
+            if (kind == Breakpoints.EXEC) refreshBreakHighlights();
+        });
+        return item;
+    }
+
+    // Duplo clique numa linha do código liga/desliga o breakpoint da linha
+    private void toggleLineBreakpoint(int line) {
+        stopTurbo();
+        boolean on = !breakpoints.hasLine(currentDebugMap, line);
+        if (!breakpoints.setLine(currentDebugMap, line, on)) {
+            explain("⚠ A linha " + (line + 1) + " não tem instruções.");
+            return;
+        }
+        explain((on ? "🔴 Breakpoint na linha " : "⚪ Breakpoint removido da linha ") + (line + 1));
+        for (Map.Entry<Integer, Integer> e : currentDebugMap.entrySet()) {
+            if (e.getValue() == line) memModel.cellChanged(e.getKey());
+        }
+        refreshBreakHighlights();
+    }
+
+    private int codeLineAt(Point p) {
+        int pos = codeViewPane.viewToModel(p);
+        return pos < 0 ? -1 : codeViewPane.getDocument().getDefaultRootElement().getElementIndex(pos);
+    }
+
+    private void showLineMenu(MouseEvent e) {
+        if (!e.isPopupTrigger()) return;
+        int line = codeLineAt(e.getPoint());
+        int addr = line < 0 ? -1 : Breakpoints.firstAddress(currentDebugMap, line);
+        if (addr < 0) return;
+        JPopupMenu menu = new JPopupMenu();
+        JCheckBoxMenuItem toggle = new JCheckBoxMenuItem("Breakpoint na linha " + (line + 1),
+                breakpoints.hasLine(currentDebugMap, line));
+        toggle.addActionListener(ev -> toggleLineBreakpoint(line));
+        JMenuItem cond = new JMenuItem("Condição do breakpoint...");
+        cond.addActionListener(ev -> editCondition(addr, "a linha " + (line + 1)));
+        menu.add(toggle);
+        menu.add(cond);
+        menu.show(codeViewPane, e.getX(), e.getY());
+    }
+
+    // Compila a condição uma vez; o breakpoint só para quando ela é verdadeira
+    private void editCondition(int addr, String where) {
+        stopTurbo();
+        Condition old = breakpoints.getCondition(Breakpoints.EXEC, addr);
+        Object text = JOptionPane.showInputDialog(this,
+                "Parar em " + where + " só quando (vazio = sempre):\n"
+                        + "ex.: ACC == 0 && mem[Q] > 10   ou   after 1000 hits",
+                "Condição do breakpoint", JOptionPane.QUESTION_MESSAGE, null, null, old != null ? old.source : "");
+        if (text == null) return;
+        Condition c;
+        try {
+            c = text.toString().trim().isEmpty() ? null : Condition.compile(text.toString(), currentSymbols);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        breakpoints.set(Breakpoints.EXEC, addr, true);
+        breakpoints.setCondition(Breakpoints.EXEC, addr, c);
+        memModel.cellChanged(addr);
+        refreshBreakHighlights();
+        explain(c == null ? String.format("🔴 Breakpoint em %03d (sem condição)", addr)
+                          : String.format("🔴 Breakpoint em %03d quando: %s", addr, c.source));
+    }
+
+    private void refreshBreakHighlights() {
+        javax.swing.text.Highlighter h = codeViewPane.getHighlighter();
+        for (Object tag : breakTags) h.removeHighlight(tag);
+        breakTags.clear();
+        javax.swing.text.Element root = codeViewPane.getDocument().getDefaultRootElement();
+        boolean[] marked = new boolean[root.getElementCount()];
+        for (Map.Entry<Integer, Integer> e : currentDebugMap.entrySet()) {
+            int line = e.getValue();
+            if (line >= marked.length || marked[line] || !breakpoints.has(Breakpoints.EXEC, e.getKey())) continue;
+            marked[line] = true;
+            javax.swing.text.Element el = root.getElement(line);
+            try {
+                breakTags.add(h.addHighlight(el.getStartOffset(), el.getEndOffset(), breakHighlighter));
+            } catch (BadLocationException ignored) {}
+        }
+    }
+
+    private String loopMessage() {
+        LoopDetector ld = cpu.loopDetector;
+        return String.format("🔁 Laço infinito: o estado se repete a cada %d instruções (PC %03d–%03d). Execução pausada.",
+                ld.period, ld.loopMinPC, ld.loopMaxPC);
+    }
+
+    private String breakMessage() {
+        Condition c = breakpoints.hitKind >= 0 ? breakpoints.getCondition(breakpoints.hitKind, breakpoints.hitAddr) : null;
+        String msg = hitMessage();
+        return c == null ? msg : msg + String.format(" Condição: %s (%dª vez).", c.source, c.hits);
+    }
+
+    private String hitMessage() {
+        switch (breakpoints.hitKind) {
+            case Breakpoints.READ:
+                return String.format("👁 Watchpoint: leitura de [%03d] = %d.", breakpoints.hitAddr, cpu.mem.get(breakpoints.hitAddr));
+            case Breakpoints.WRITE:
+                return String.format("👁 Watchpoint: escrita em [%03d] ← %d.", breakpoints.hitAddr, cpu.mem.get(breakpoints.hitAddr));
+            default:
+                Integer line = currentDebugMap.get(cpu.PC);
+                return String.format("🔴 Breakpoint: parou antes de executar PC %03d%s.", cpu.PC,
+                        line != null ? " (linha " + (line + 1) + ")" : "");
+        }
     }
 
     private void setupListeners() {
         btLoad.addActionListener(e -> {
-            timer.stop();
+            stopRun();
             loadSelectedProgram();
             refreshUI();
             highlightCurrentPCLine();
         });
-        btStep.addActionListener(e -> doStep());
+        btStep.addActionListener(e -> {
+            stopTurbo();
+            doStep();
+        });
+        btBack.addActionListener(e -> {
+            stopRun();
+            if (history.stepBack()) afterTimeTravel("⤴ Voltou para o passo " + history.position());
+        });
+        btRunBack.addActionListener(e -> doRunBackToLine());
         btRun.addActionListener(e -> {
+            stopTurbo();
             if (!timer.isRunning()) {
                 timer.start();
                 btRun.setText("Rodando...");
@@ -288,20 +674,38 @@ public class AppSwing extends JFrame {
                 btStep.setEnabled(false);
             }
         });
+        btTurbo.addActionListener(e -> startTurbo());
+        turboRate.addActionListener(e -> {
+            if (turbo != null) turbo.setRate(TURBO_RATES[turboRate.getSelectedIndex()]);
+        });
         btPause.addActionListener(e -> {
+            if (turbo != null && !turbo.isPaused()) {
+                turbo.pause();
+                btTurbo.setText("Continuar ⚡");
+                btTurbo.setEnabled(true);
+                return;
+            }
             timer.stop();
             btRun.setText("Run ▶");
             btRun.setEnabled(true);
             btStep.setEnabled(true);
         });
         btReset.addActionListener(e -> {
-            timer.stop();
+            stopRun();
             cpu.reset();
+            history.reset();
             clearLineHighlight();
             codeViewPane.setText("");
-            currentDebugMap.clear();
+            currentDebugMap = new LinkedHashMap<>();
+            currentSymbols = Collections.emptyMap();
+            currentSourceLines = new String[0];
+            breakpoints.clear();
+            refreshBreakHighlights();
+            profiler.reset();
+            heatTotal = -1;
             refreshUI();
-            expl.setText(" Sistema resetado.\n");
+            clearLog();
+            explain(" Sistema resetado.");
             btRun.setText("Run ▶");
             btRun.setEnabled(true);
             btStep.setEnabled(true);
@@ -353,7 +757,7 @@ public class AppSwing extends JFrame {
         } catch (Exception ignored) {}
     }
 
-    private void doStep() {
+    private int doStep() {
         lastReadAddr = -1; lastWriteAddr = -1;
 
         if (cpu.halted) {
@@ -363,45 +767,241 @@ public class AppSwing extends JFrame {
             btStep.setEnabled(true);
             explain("⏹ HALT encontrado. Execução finalizada.");
             refreshUI();
-            return;
+            return cpu.haltReason;
         }
 
         highlightCurrentPCLine();
-        String line = cpu.step();
-        parseLogForMemAccess(line);
-        explain(prettyLog(line));
+        int st = history.step();
+        // Endereços e texto vêm do rastro binário, sem reinterpretar o log
+        long ev = trace.last();
+        lastReadAddr = TraceBuffer.readAddr(ev);
+        lastWriteAddr = TraceBuffer.writeAddr(ev);
+        stepLog.addStep(ev);
+        logModel.added();
+        if (st == CPU.LOOP) {
+            // Vale para o timer, o passo manual e o IN depois do turbo
+            stopRun();
+            explain(loopMessage());
+        }
+        if (st == CPU.BREAK) {
+            stopRun();
+            explain(breakMessage());
+        }
+        refreshUI();
+        return st;
+    }
+
+    private void stopRun() {
+        stopTurbo();
+        timer.stop();
+        btRun.setText("Run ▶");
+        btRun.setEnabled(true);
+        btStep.setEnabled(true);
+    }
+
+    private void startTurbo() {
+        if (turbo != null) {
+            // Pausado: continua de onde parou
+            turbo.resume();
+            btTurbo.setText("Turbo ⚡");
+            btTurbo.setEnabled(false);
+            return;
+        }
+        stopRun();
+        if (cpu.halted) {
+            explain("⏹ HALT encontrado. Execução finalizada.");
+            return;
+        }
+        turboStart = System.nanoTime();
+        turboSteps = 0;
+        launchTurbo();
+        explain("⚡ Turbo iniciado.");
+    }
+
+    // Cria e inicia o TurboRunner; também usado para continuar depois de um IN
+    private void launchTurbo() {
+        lastReadAddr = -1; lastWriteAddr = -1;
+        clearLineHighlight();
+        long rate = TURBO_RATES[turboRate.getSelectedIndex()];
+        turboFast = rate == 0;
+        if (turboFast) {
+            turboLoopDetector = cpu.loopDetector;
+            cpu.trace = null;
+            cpu.profiler = null;
+            cpu.loopDetector = null;
+        }
+        final TurboRunner r = new TurboRunner(cpu, history, FRAME_RATE,
+                st -> SwingUtilities.invokeLater(() -> turboFinished(st)));
+        r.setRate(rate);
+        turbo = r;
+        r.start();
+        btTurbo.setEnabled(false);
+        btStep.setEnabled(false);
         refreshUI();
     }
 
-    private void parseLogForMemAccess(String log) {
-        Matcher readMatcher = READ_PAT.matcher(log);
-        if (readMatcher.find()) {
-            try { lastReadAddr = Integer.parseInt(readMatcher.group(2)); } catch (Exception ignored) {}
+    /** Encerra o turbo (se houver) e devolve a CPU à thread da interface. */
+    private void stopTurbo() {
+        if (turbo == null) return;
+        TurboRunner r = turbo;
+        turbo = null;
+        r.stop();
+        btTurbo.setText("Turbo ⚡");
+        btTurbo.setEnabled(true);
+        btStep.setEnabled(true);
+        explain(String.format("⚡ Turbo interrompido após %d instruções.", turboSteps + r.steps()));
+        afterTurbo();
+    }
+
+    private void turboFinished(int st) {
+        if (turbo == null || turbo.status() != st) return;   // já encerrado por stopTurbo()
+        TurboRunner r = turbo;
+        turbo = null;
+        r.stop();
+        btTurbo.setText("Turbo ⚡");
+        btTurbo.setEnabled(true);
+        btStep.setEnabled(true);
+        if (st == CPU.INPUT) {
+            // O turbo parou antes do IN: o diálogo abre aqui, na thread da interface, e o turbo continua
+            afterTurbo();
+            turboSteps += r.steps() + 1;
+            if (doStep() == CPU.RUNNING) launchTurbo();
             return;
         }
-        Matcher writeMatcher = WRITE_PAT.matcher(log);
-        if (writeMatcher.find()) {
-            try { lastWriteAddr = Integer.parseInt(writeMatcher.group(1)); } catch (Exception ignored) {}
+        double ms = (System.nanoTime() - turboStart) / 1e6;
+        explain(String.format("⚡ Turbo: %d instruções em %.1f ms.", turboSteps + r.steps(), ms));
+        if (st == CPU.HALTED) {
+            explain("⏹ HALT encontrado. Execução finalizada.");
+        } else if (st == CPU.LOOP) {
+            explain(loopMessage());
+        } else if (st == CPU.BREAK) {
+            explain(breakMessage());
+        } else if (st == CPU.INVALID) {
+            explain(String.format("⚠ Instrução inválida em %03d. Execução finalizada.", cpu.PC));
+        } else {
+            explain("⚠ Erro: " + r.error);
+        }
+        afterTurbo();
+    }
+
+    // A CPU voltou para a interface: marca o último acesso e a linha atual
+    private void afterTurbo() {
+        if (turboFast) {
+            // O caminho rápido não registra acessos; o detector recomeça do estado atual
+            turboFast = false;
+            cpu.trace = trace;
+            cpu.profiler = profiler;
+            cpu.loopDetector = turboLoopDetector;
+            turboLoopDetector = null;
+            if (cpu.loopDetector != null) cpu.loopDetector.reset(cpu);
+            lastReadAddr = -1;
+            lastWriteAddr = -1;
+        } else {
+            lastReadAddr = cpu.lastReadAddr();
+            lastWriteAddr = cpu.lastWriteAddr();
         }
+        refreshUI();
+        highlightCurrentPCLine();
     }
 
+    private void doRunBackToLine() {
+        stopRun();
+        if (currentDebugMap == null) return;
+        int line = codeViewPane.getDocument().getDefaultRootElement().getElementIndex(codeViewPane.getCaretPosition());
+        boolean[] addrs = new boolean[cpu.mem.size()];
+        boolean any = false;
+        for (Map.Entry<Integer, Integer> e : currentDebugMap.entrySet()) {
+            if (e.getValue() == line) { addrs[e.getKey()] = true; any = true; }
+        }
+        if (!any) {
+            explain("⚠ A linha " + (line + 1) + " não tem instruções.");
+            return;
+        }
+        if (history.runBackTo(addrs)) afterTimeTravel("⏮ Voltou para a linha " + (line + 1) + " (passo " + history.position() + ")");
+        else explain("⚠ A linha " + (line + 1) + " ainda não foi executada.");
+    }
+
+    // Atualiza a tela depois de voltar no tempo; o histórico reexecuta o passo anterior,
+    // então os acessos dele vêm da CPU (o rastro não grava a reexecução)
+    private void afterTimeTravel(String msg) {
+        lastReadAddr = cpu.lastReadAddr();
+        lastWriteAddr = cpu.lastWriteAddr();
+        explain(msg);
+        refreshUI();
+        highlightCurrentPCLine();
+    }
+
+    /** Marca a tela como desatualizada; o próximo quadro do frameTimer a redesenha. */
     private void refreshUI() {
-        cardPC.setValue(String.format("%03d", cpu.PC));
-        cardIR.setValue(String.format("0x%02X", cpu.IR));
-        cardACC.setValue(String.valueOf(cpu.ACC));
-        cardZ.setValue(cpu.Z == 1 ? "1 (Sim)" : "0");
-        cardN.setValue(cpu.N == 1 ? "1 (Sim)" : "0");
+        uiDirty = true;
+        if (!frameTimer.isRunning()) frameTimer.start();
+    }
 
-        if (cpu.Z == 1) cardZ.setValueColor(new Color(46, 125, 50));
+    // Um quadro: atualiza os cartões e só as células de memória que mudaram desde o quadro anterior
+    private void paintFrame() {
+        if (!uiDirty) {
+            frameTimer.stop();
+            return;
+        }
+        // Com o turbo ligado a CPU é da thread dele: mostra o último snapshot e continua redesenhando
+        Snapshot s = turbo != null ? turbo.latest() : null;
+        uiDirty = s != null;
+        if (s != null) {
+            showRegisters(s.PC, s.IR, s.ACC, s.Z, s.N);
+            for (int a = 0; a < frameMem.length; a++) frameMem[a] = s.mem(a);
+            memModel.sync(frameMem, s.PC, -1, -1);
+        } else {
+            showRegisters(cpu.PC, cpu.IR, cpu.ACC, cpu.Z, cpu.N);
+            cpu.mem.copyTo(frameMem);
+            memModel.sync(frameMem, cpu.PC, lastReadAddr, lastWriteAddr);
+            // O perfil só é lido com a CPU parada na thread da interface
+            if (profiler.total != heatTotal) refreshProfile();
+        }
+    }
+
+    private void showRegisters(int pc, int ir, int acc, int z, int n) {
+        cardPC.setValue(String.format("%03d", pc));
+        cardIR.setValue(String.format("0x%02X", ir));
+        cardACC.setValue(String.valueOf(acc));
+        cardZ.setValue(z == 1 ? "1 (Sim)" : "0");
+        cardN.setValue(n == 1 ? "1 (Sim)" : "0");
+
+        if (z == 1) cardZ.setValueColor(new Color(46, 125, 50));
         else cardZ.setValueColor(UIManager.getColor("Label.foreground"));
 
-        if (cpu.N == 1) cardN.setValueColor(Color.RED);
+        if (n == 1) cardN.setValueColor(Color.RED);
         else cardN.setValueColor(UIManager.getColor("Label.foreground"));
+    }
 
-        for (int r = 0; r < 16; r++)
-            for (int c = 0; c < 16; c++)
-                memModel.setValueAt(cpu.mem[r * 16 + c], r, c);
-        memTable.repaint();
+    /**
+     * Memória 16x16 lida de uma cópia do último quadro. sync() compara com o estado
+     * novo e avisa a tabela só das células alteradas (cada aviso repinta uma célula).
+     */
+    private static final class MemoryModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private final int[] shown = new int[256];
+        int shownPC = -1, shownRead = -1, shownWrite = -1;
+
+        void sync(int[] mem, int pc, int read, int write) {
+            for (int a = 0; a < shown.length; a++) {
+                if (mem[a] != shown[a]) {
+                    shown[a] = mem[a];
+                    cellChanged(a);
+                }
+            }
+            if (pc != shownPC) { cellChanged(shownPC); shownPC = pc; cellChanged(pc); }
+            if (read != shownRead) { cellChanged(shownRead); shownRead = read; cellChanged(read); }
+            if (write != shownWrite) { cellChanged(shownWrite); shownWrite = write; cellChanged(write); }
+        }
+
+        void cellChanged(int addr) {
+            if (addr >= 0 && addr < shown.length) fireTableCellUpdated(addr >> 4, addr & 15);
+        }
+
+        @Override public int getRowCount() { return 16; }
+        @Override public int getColumnCount() { return 16; }
+        @Override public String getColumnName(int c) { return Integer.toHexString(c).toUpperCase(); }
+        @Override public Object getValueAt(int r, int c) { return shown[r * 16 + c]; }
     }
 
     private static class StatCard extends JPanel {
@@ -465,7 +1065,7 @@ public class AppSwing extends JFrame {
             String prog = examples.getOrDefault(exampleBox.getSelectedItem(), "");
             Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
             loadToCPU(out);
-            setupDebug(prog, out.debugMap);
+            setupDebug(prog, out);
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Erro: " + ex.getMessage());
         }
@@ -473,14 +1073,20 @@ public class AppSwing extends JFrame {
 
     private void loadUserProgram(String userCode) {
         try {
-            timer.stop();
+            stopRun();
             if (userCode == null || userCode.trim().isEmpty()) return;
-            String src = userCode.replace("\r\n","\n").trim();
-            Assembler.AsmOut out = Assembler.assembleWithVars(src, 200);
+            // Usa a montagem feita em segundo plano pelo editor, se já estiver pronta para este texto
+            String src = userCode;
+            Assembler.AsmOut out = EditorTab.assembled(userCode);
+            if (out == null) {
+                src = userCode.replace("\r\n","\n").trim();
+                out = Assembler.assembleWithVars(src, 200);
+            }
             loadToCPU(out);
-            setupDebug(src, out.debugMap);
+            setupDebug(src, out);
             refreshUI();
-            expl.setText("✅ Programa carregado com sucesso.\n");
+            clearLog();
+            explain("✅ Programa carregado com sucesso.");
             highlightCurrentPCLine();
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Erro: " + ex.getMessage());
@@ -488,19 +1094,23 @@ public class AppSwing extends JFrame {
     }
 
     private void loadToCPU(Assembler.AsmOut out) {
-        cpu.halted = false;
-        cpu.reset();
-        System.arraycopy(out.code, 0, cpu.mem, 0, Math.min(out.code.length, cpu.mem.length));
-        for (Map.Entry<Integer,Integer> e : out.dataInits.entrySet()) {
-            int addr = e.getKey();
-            if (addr >= 0 && addr < cpu.mem.length) cpu.mem[addr] = e.getValue() & 0xFF;
-        }
+        cpu.load(out);
+        trace.clear();
+        history.reset();
+        profiler.reset();
+        heatTotal = -1;
     }
 
-    private void setupDebug(String source, Map<Integer,Integer> debugMap) {
+    private void setupDebug(String source, Assembler.AsmOut out) {
         clearLineHighlight();
         codeViewPane.setText(source);
-        currentDebugMap = debugMap;
+        currentDebugMap = out.debugMap;
+        currentSymbols = out.symbols;
+        currentSourceLines = source.split("\n", -1);
+        // Breakpoints são do programa anterior
+        breakpoints.clear();
+        refreshBreakHighlights();
+        memTable.repaint();
         EditorTab.applyHighlighting(codeViewPane);
         codeViewPane.setCaretPosition(0);
     }
@@ -533,8 +1143,45 @@ public class AppSwing extends JFrame {
     }
 
     private void explain(String msg) {
-        expl.setText(msg + "\n" + expl.getText());
-        expl.setCaretPosition(0);
+        stepLog.addNote(msg);
+        logModel.added();
+    }
+
+    private void clearLog() {
+        stepLog.clear();
+        logModel.cleared();
+    }
+
+    /** O log visto pela lista: o mais recente em cima; o texto de cada linha só é montado ao pintá-la. */
+    private final class LogModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+        private int shownSize;
+
+        void added() {
+            int size = stepLog.size();
+            if (size > shownSize) {
+                shownSize = size;
+                fireIntervalAdded(this, 0, 0);
+            } else {
+                // Anel cheio: a mais antiga saiu e todas as linhas andaram uma posição
+                fireContentsChanged(this, 0, size - 1);
+            }
+            expl.ensureIndexIsVisible(0);
+        }
+
+        void cleared() {
+            int old = shownSize;
+            shownSize = 0;
+            if (old > 0) fireIntervalRemoved(this, 0, old - 1);
+        }
+
+        @Override public int getSize() { return shownSize; }
+
+        @Override
+        public String getElementAt(int i) {
+            int k = stepLog.size() - 1 - i;
+            return stepLog.isStep(k) ? prettyLog(stepLog.text(k)) : stepLog.text(k);
+        }
     }
 
     private String prettyLog(String log) {
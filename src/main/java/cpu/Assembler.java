@@ -1,186 +1,559 @@
 package cpu;
 
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Montador de uma passada, sem regex: lê o fonte caractere a caractere, emite
+ * direto num int[] e corrige as referências a rótulos ainda não definidos no
+ * fim (backpatching). A tabela de símbolos é um hash aberto sobre arrays, e as
+ * buscas comparam direto com o fonte, sem criar Strings.
+ *
+ * Os erros são os mesmos do montador antigo de duas passadas, inclusive na
+ * prioridade: símbolo duplicado e código grande demais aparecem na hora; os
+ * erros que ele só via na segunda passada (mnemônico, operando, símbolo não
+ * encontrado) são lançados no fim, o da linha mais acima primeiro.
+ */
 public class Assembler {
 
     public static class AsmOut {
         public final int[] code;
         public final Map<Integer,Integer> dataInits;
         public final Map<Integer,Integer> debugMap;
+        /** Rótulos e variáveis (em maiúsculas) -> endereço. */
+        public final Map<String,Integer> symbols;
 
         public AsmOut(int[] code, Map<Integer,Integer> dataInits, Map<Integer,Integer> debugMap) {
+            this(code, dataInits, debugMap, new LinkedHashMap<String,Integer>());
+        }
+
+        public AsmOut(int[] code, Map<Integer,Integer> dataInits, Map<Integer,Integer> debugMap, Map<String,Integer> symbols) {
             this.code = code;
             this.dataInits = dataInits;
             this.debugMap = debugMap;
+            this.symbols = symbols;
         }
     }
 
-    private static final Pattern varPat = Pattern.compile("^([A-Za-z_][A-Za-z0-9_]*)\\s*,?\\s+DEC\\s+(-?\\d+)\\s*$", Pattern.CASE_INSENSITIVE);
-    private static final Pattern codeLabelPat = Pattern.compile("^([A-Za-z_][A-Za-z0-9_]*):\\s*$", Pattern.CASE_INSENSITIVE);
+    // Tipos de operando
+    private static final int NONE = 0, IMMEDIATE = 1, ADDRESS = 2;
+
+    // Mnemônicos aceitos (e sinônimos), com opcode e tipo de operando
+    private static final String[] MNEMONICS = {
+            "LOADI", "LOADM", "LOAD", "STORE", "ADDI", "SUBI", "ADDM", "ADD", "SUBM", "SUB",
+            "JMP", "JZ", "JN", "IN", "INPUT", "OUT", "OUTPUT", "HALT" };
+    private static final int[] OPCODES = {
+            CPU.LOADI, CPU.LOADM, CPU.LOADM, CPU.STORE, CPU.ADDI, CPU.SUBI, CPU.ADDM, CPU.ADDM, CPU.SUBM, CPU.SUBM,
+            CPU.JMP, CPU.JZ, CPU.JN, CPU.IN, CPU.IN, CPU.OUT, CPU.OUT, CPU.HALT };
+    private static final int[] OPERANDS = {
+            IMMEDIATE, ADDRESS, ADDRESS, ADDRESS, IMMEDIATE, IMMEDIATE, ADDRESS, ADDRESS, ADDRESS, ADDRESS,
+            ADDRESS, ADDRESS, ADDRESS, NONE, NONE, NONE, NONE, NONE };
 
     public static int[] assemble(String src) {
         return assembleWithVars(src, 200).code;
     }
 
     public static AsmOut assembleWithVars(String src, int dataBase) {
-        String[] lines = src.split("\\R");
-        Map<String,Integer> symbols = new LinkedHashMap<>();
-        Map<Integer,Integer> dataInits = new LinkedHashMap<>();
-        Map<Integer,Integer> debugMap = new LinkedHashMap<>();
-
-        int pc = 0;
-        int nextData = dataBase;
-        int lineNumber = 0;
-
-        // Passada 1
-        for (String raw : lines) {
-            lineNumber++;
-            String line = stripComments(raw).trim();
-            if (line.isEmpty()) continue;
-
-            Matcher mLabel = codeLabelPat.matcher(line);
-            if (mLabel.matches()) {
-                String name = mLabel.group(1).toUpperCase(Locale.ROOT);
-                if (symbols.containsKey(name)) throw new IllegalArgumentException("Símbolo duplicado: " + name);
-                symbols.put(name, pc);
-                continue;
-            }
-
-            Matcher mVar = varPat.matcher(line);
-            if (mVar.matches()) {
-                String name = mVar.group(1).toUpperCase(Locale.ROOT);
-                int val = clampByte(Integer.parseInt(mVar.group(2)));
-                if (symbols.containsKey(name)) throw new IllegalArgumentException("Símbolo duplicado: " + name);
-                symbols.put(name, nextData);
-                dataInits.put(nextData, val);
-                nextData++;
-                continue;
-            }
-
-            debugMap.put(pc, lineNumber - 1);
-            String[] parts = line.split("\\s+");
-            String mn = normalizeMnemonic(parts[0]);
-            if (needsArg(mn)) pc += 2; else pc += 1;
-            if (pc > 256) throw new IllegalArgumentException("Código excede 256 bytes.");
-        }
-
-        // Passada 2
-        List<Integer> code = new ArrayList<>(); // A lista chama-se 'code'
-        for (String raw : lines) {
-            String line = stripComments(raw).trim();
-            if (line.isEmpty()) continue;
-            if (codeLabelPat.matcher(line).matches()) continue;
-            if (varPat.matcher(line).matches()) continue;
-
-            String[] parts = line.split("\\s+");
-            String mn = normalizeMnemonic(parts[0]);
-
-            switch (mn) {
-                case "LOADI":
-                    code.add(CPU.LOADI); code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "LOADM": case "LOAD":
-                    code.add(CPU.LOADM); code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "STORE":
-                    code.add(CPU.STORE); code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "ADDI":
-                    code.add(CPU.ADDI);  code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "SUBI":
-                    code.add(CPU.SUBI);  code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "ADDM": case "ADD":
-                    code.add(CPU.ADDM);  code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "SUBM": case "SUB":
-                    code.add(CPU.SUBM);  code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "JMP":
-                    code.add(CPU.JMP);   code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "JZ":
-                    code.add(CPU.JZ);    code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "JN":
-                    code.add(CPU.JN);    code.add(parseOperand(parts, symbols, line));
-                    break;
-                case "IN": case "INPUT":
-                    code.add(CPU.IN);
+        return new Pass(dataBase, false).run(src);
+    }
+
+    /**
+     * Monta para o modo estendido (CPU.wide()): operandos de endereço com 2 bytes (little-endian)
+     * e código de até 64 KiB. Os imediatos continuam com 1 byte.
+     */
+    public static AsmOut assembleWide(String src, int dataBase) {
+        return new Pass(dataBase, true).run(src);
+    }
+
+    /** Erro de montagem com a linha (0-based, como no debugMap) em que ocorreu. */
+    public static class AsmException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+        public final int line;
+
+        public AsmException(String message, int line) {
+            super(message);
+            this.line = line;
+        }
+    }
+
+    /**
+     * Montagem repetida de um texto em edição. A análise de cada linha fica
+     * guardada pelo conteúdo, então só as linhas novas ou alteradas são lidas
+     * de novo; o resto é só a ligação (endereços e símbolos), que é linear e barata.
+     * Não é thread-safe: use sempre da mesma thread.
+     */
+    public static final class Incremental {
+        private HashMap<String, Lexed> cache = new HashMap<>();
+        /** Linhas analisadas de novo na última chamada (para diagnóstico). */
+        public int lastLexed;
+
+        public AsmOut assemble(String src, int dataBase) {
+            HashMap<String, Lexed> next = new HashMap<>(Math.max(16, cache.size() * 2));
+            String[] texts = new String[64];
+            Lexed[] lexed = new Lexed[64];
+            int n = 0;
+            lastLexed = 0;
+
+            final int len = src.length();
+            int i = 0;
+            do {
+                int ls = i, le = lineEnd(src, i);
+                i = skipLineBreak(src, le);
+                String t = src.substring(ls, le);
+                Lexed l = next.get(t);
+                if (l == null) {
+                    l = cache.get(t);
+                    if (l == null) {
+                        l = new Lexed();
+                        l.lex(t, 0, t.length());
+                        lastLexed++;
+                    }
+                    next.put(t, l);
+                }
+                if (n == texts.length) {
+                    texts = Arrays.copyOf(texts, n * 2);
+                    lexed = Arrays.copyOf(lexed, n * 2);
+                }
+                texts[n] = t;
+                lexed[n] = l;
+                n++;
+            } while (i < len);
+            cache = next;
+
+            Pass p = new Pass(dataBase, false);
+            for (int k = 0; k < n; k++) p.apply(texts[k], lexed[k], k);
+            return p.finish();
+        }
+    }
+
+    // Fim da linha que começa em i (mesmos terminadores de \R)
+    private static int lineEnd(String s, int i) {
+        final int len = s.length();
+        while (i < len && !isLineBreak(s.charAt(i))) i++;
+        return i;
+    }
+
+    // Pula o terminador em i (\r\n conta como um só)
+    private static int skipLineBreak(String s, int i) {
+        if (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '\r' && i < s.length() && s.charAt(i) == '\n') i++;
+        }
+        return i;
+    }
+
+    // Tipos de linha
+    private static final int BLANK = 0, LABEL = 1, VAR = 2, INSTR = 3;
+
+    /**
+     * Análise de uma linha, sem efeitos: só posições dentro do texto.
+     * O mesmo objeto é reaproveitado linha a linha pelo Pass.
+     */
+    static final class Lexed {
+        int kind;
+        int from, to;        // linha sem comentário, após trim()
+        int nameTo;          // LABEL/VAR: nome em [from, nameTo)
+        int numFrom;         // VAR: valor em [numFrom, to)
+        int mnTo, m;         // INSTR: mnemônico em [from, mnTo) e índice em MNEMONICS (-1 = inválido)
+        int opFrom, opTo;    // INSTR: operando (opFrom = -1 se faltar)
+
+        void lex(String s, int lineFrom, int lineTo) {
+            // Comentários: ';' ou '/' até o fim da linha
+            int end = lineFrom;
+            while (end < lineTo) {
+                char c = s.charAt(end);
+                if (c == ';' || c == '/') break;
+                end++;
+            }
+            // trim()
+            int b = lineFrom;
+            while (b < end && s.charAt(b) <= ' ') b++;
+            while (end > b && s.charAt(end - 1) <= ' ') end--;
+            from = b;
+            to = end;
+            if (b == end) {
+                kind = BLANK;
+                return;
+            }
+
+            int id = identEnd(s, b, end);
+            if (id > b) {
+                nameTo = id;
+                if (id + 1 == end && s.charAt(id) == ':') {
+                    kind = LABEL;
+                    return;
+                }
+                if (variable(s, id, end)) {
+                    kind = VAR;
+                    return;
+                }
+            }
+
+            kind = INSTR;
+            int mnEnd = b;
+            while (mnEnd < end && !isSpace(s.charAt(mnEnd))) mnEnd++;
+            mnTo = mnEnd;
+            m = mnemonic(s, b, mnEnd);
+            // Operando: o segundo token (tokens extras são ignorados, como no split antigo)
+            int t = mnEnd;
+            while (t < end && isSpace(s.charAt(t))) t++;
+            if (t == end) {
+                opFrom = opTo = -1;
+                return;
+            }
+            int tEnd = t;
+            while (tEnd < end && !isSpace(s.charAt(tEnd))) tEnd++;
+            opFrom = t;
+            opTo = tEnd;
+        }
+
+        // [,] DEC valor depois do nome (mesma gramática do antigo varPat)
+        private boolean variable(String s, int nameTo, int end) {
+            int p = nameTo;
+            int ws = p;
+            while (p < end && isSpace(s.charAt(p))) p++;
+            if (p < end && s.charAt(p) == ',') {
+                p++;
+                ws = p;
+                while (p < end && isSpace(s.charAt(p))) p++;
+            }
+            if (p == ws) return false;
+            if (p + 3 > end || (s.charAt(p) | 0x20) != 'd' || (s.charAt(p + 1) | 0x20) != 'e' || (s.charAt(p + 2) | 0x20) != 'c') return false;
+            p += 3;
+            int q = p;
+            while (p < end && isSpace(s.charAt(p))) p++;
+            if (p == q) return false;
+            int numStart = p;
+            if (p < end && s.charAt(p) == '-') p++;
+            int digits = p;
+            while (p < end && s.charAt(p) >= '0' && s.charAt(p) <= '9') p++;
+            if (p == digits || p != end) return false;
+            numFrom = numStart;
+            return true;
+        }
+    }
+
+    /** Ligação: endereços, símbolos, código e erros, linha a linha. */
+    private static final class Pass {
+        final boolean wide;
+        final int limit;
+
+        int[] code = new int[256];
+        int pc;
+        int nextData;
+        final SortedIntMap dataInits = new SortedIntMap();
+        final SortedIntMap debugMap = new SortedIntMap();
+        final Symbols symbols = new Symbols();
+
+        // Referências ainda não resolvidas: posição no código, linha e token (texto + trecho)
+        int[] fixPos = new int[16], fixLine = new int[16], fixFrom = new int[16], fixTo = new int[16];
+        String[] fixText = new String[16];
+        boolean[] fixWide = new boolean[16];
+        int fixCount;
+
+        // Primeiro erro "de segunda passada" (lançado só no fim)
+        String deferred;
+        int deferredLine = Integer.MAX_VALUE;
+
+        Pass(int dataBase, boolean wide) {
+            this.wide = wide;
+            this.limit = wide ? 65536 : 256;
+            this.nextData = dataBase;
+        }
+
+        AsmOut run(String src) {
+            final int len = src.length();
+            Lexed lx = new Lexed();
+            int line = 0;
+            int i = 0;
+            do {
+                int ls = i, le = lineEnd(src, i);
+                i = skipLineBreak(src, le);
+                lx.lex(src, ls, le);
+                apply(src, lx, line);
+                line++;
+            } while (i < len);
+            return finish();
+        }
+
+        AsmOut finish() {
+            resolveFixups();
+            if (deferred != null) throw new AsmException(deferred, deferredLine);
+
+            int[] bytes = new int[pc];
+            for (int k = 0; k < pc; k++) bytes[k] = code[k] & 0xFF;
+            return new AsmOut(bytes, dataInits, debugMap, symbols.toMap());
+        }
+
+        void apply(String s, Lexed l, int line) {
+            switch (l.kind) {
+                case LABEL:
+                    defineSymbol(s, l.from, l.nameTo, pc, line);
                     break;
-                case "OUT": case "OUTPUT":
-                    code.add(CPU.OUT);
+                case VAR:
+                    int val = parseDec(s, l.numFrom, l.to);
+                    // No modo padrão a CPU ignora variáveis fora da memória; o estendido recusa
+                    if (wide && (nextData < 0 || nextData >= limit)) {
+                        throw new AsmException("Variável fora da memória (0.." + (limit - 1) + "): " + nextData, line);
+                    }
+                    defineSymbol(s, l.from, l.nameTo, nextData, line);
+                    dataInits.append(nextData, val & 0xFF);
+                    nextData++;
                     break;
-                case "HALT":
-                    code.add(CPU.HALT);
+                case INSTR:
+                    instruction(s, l, line);
                     break;
                 default:
-                    throw new IllegalArgumentException("Mnemônico inválido: " + mn);
+                    break;
+            }
+        }
+
+        private void instruction(String s, Lexed l, int line) {
+            debugMap.append(pc, line);
+            int m = l.m;
+            int kind = m >= 0 ? OPERANDS[m] : NONE;
+            int size = kind == NONE ? 1 : kind == ADDRESS && wide ? 3 : 2;
+            int at = pc;
+            pc += size;
+            if (pc > limit) throw new AsmException("Código excede " + limit + " bytes.", line);
+            if (pc > code.length) code = Arrays.copyOf(code, Math.max(code.length * 2, pc));
+
+            if (m < 0) {
+                defer(line, "Mnemônico inválido: " + s.substring(l.from, l.mnTo).toUpperCase(Locale.ROOT));
+                return;
+            }
+            code[at] = OPCODES[m];
+            if (kind == NONE) return;
+            if (l.opFrom < 0) {
+                defer(line, "Falta operando em: " + s.substring(l.from, l.to));
+                return;
+            }
+            operand(s, at + 1, l.opFrom, l.opTo, kind == ADDRESS ? limit - 1 : 255, kind == ADDRESS && wide, line);
+        }
+
+        private void operand(String s, int at, int from, int to, int max, boolean w, int line) {
+            long num = parseNumber(s, from, to);
+            if (num != Long.MIN_VALUE) {
+                int v = (int) num;
+                if (v < 0 || v > max) {
+                    defer(line, "Endereço fora de 0.." + max + ": " + v);
+                    return;
+                }
+                emit(at, v, w);
+                return;
+            }
+            int addr = symbols.find(s, from, to);
+            if (addr >= 0) {
+                emit(at, addr, w);
+                return;
+            }
+            // Ainda não definido: resolve no fim
+            if (fixCount == fixPos.length) {
+                int n = fixCount * 2;
+                fixPos = Arrays.copyOf(fixPos, n);
+                fixLine = Arrays.copyOf(fixLine, n);
+                fixFrom = Arrays.copyOf(fixFrom, n);
+                fixTo = Arrays.copyOf(fixTo, n);
+                fixText = Arrays.copyOf(fixText, n);
+                fixWide = Arrays.copyOf(fixWide, n);
+            }
+            fixPos[fixCount] = at;
+            fixLine[fixCount] = line;
+            fixFrom[fixCount] = from;
+            fixTo[fixCount] = to;
+            fixText[fixCount] = s;
+            fixWide[fixCount] = w;
+            fixCount++;
+        }
+
+        private void emit(int at, int v, boolean w) {
+            code[at] = v & 0xFF;
+            if (w) code[at + 1] = v >>> 8;
+        }
+
+        private void resolveFixups() {
+            for (int k = 0; k < fixCount; k++) {
+                int addr = symbols.find(fixText[k], fixFrom[k], fixTo[k]);
+                if (addr < 0) {
+                    // As pendências estão em ordem de linha: a primeira que falha é a mais acima
+                    defer(fixLine[k], "Símbolo não encontrado: " + fixText[k].substring(fixFrom[k], fixTo[k]));
+                    return;
+                }
+                emit(fixPos[k], addr, fixWide[k]);
+            }
+        }
+
+        private void defer(int line, String msg) {
+            if (line < deferredLine) {
+                deferredLine = line;
+                deferred = msg;
             }
         }
 
-        // =========================================================
-        // CORREÇÃO DO ERRO (out -> code)
-        // =========================================================
-        int[] bytes = new int[code.size()];
-        for (int i = 0; i < code.size(); i++) {
-            bytes[i] = code.get(i) & 0xFF;
+        private void defineSymbol(String s, int from, int to, int addr, int line) {
+            if (!symbols.define(s, from, to, addr)) {
+                throw new AsmException("Símbolo duplicado: " + s.substring(from, to).toUpperCase(Locale.ROOT), line);
+            }
         }
-        return new AsmOut(bytes, dataInits, debugMap);
-        // =========================================================
     }
 
-    private static boolean needsArg(String m) {
-        switch (m) {
-            case "LOADI":
-            case "LOADM":
-            case "LOAD":
-            case "STORE":
-            case "ADDI":
-            case "SUBI":
-            case "ADDM":
-            case "ADD":
-            case "SUBM":
-            case "SUB":
-            case "JMP":
-            case "JZ":
-            case "JN":
-                return true;
-            default:
-                return false;
+    // [A-Za-z_][A-Za-z0-9_]*: devolve o fim do identificador (from se não houver)
+    private static int identEnd(String s, int from, int end) {
+        if (from >= end || !isIdentStart(s.charAt(from))) return from;
+        int p = from + 1;
+        while (p < end && isIdentPart(s.charAt(p))) p++;
+        return p;
+    }
+
+    private static int mnemonic(String s, int from, int to) {
+        int n = to - from;
+        if (isAscii(s, from, to)) {
+            for (int k = 0; k < MNEMONICS.length; k++) {
+                String m = MNEMONICS[k];
+                if (m.length() == n && s.regionMatches(true, from, m, 0, n)) return k;
+            }
+            return -1;
         }
+        // Fora do ASCII: mesma conversão do montador antigo
+        String up = s.substring(from, to).toUpperCase(Locale.ROOT);
+        for (int k = 0; k < MNEMONICS.length; k++) if (MNEMONICS[k].equals(up)) return k;
+        return -1;
     }
 
-    private static String stripComments(String raw) {
-        String s = raw;
-        int i = s.indexOf(';');
-        if (i >= 0) s = s.substring(0, i);
-        int j = s.indexOf('/');
-        if (j >= 0) s = s.substring(0, j);
-        return s;
+    // Valor de DEC (já validado como -?[0-9]+)
+    private static int parseDec(String s, int from, int to) {
+        long v = parseNumber(s, from, to);
+        if (v == Long.MIN_VALUE) return Integer.parseInt(s.substring(from, to)); // lança NumberFormatException como antes
+        return (int) v;
     }
 
-    private static String normalizeMnemonic(String m) {
-        return m.toUpperCase(Locale.ROOT);
+    // Como Integer.parseInt; Long.MIN_VALUE se o token não for um int
+    private static long parseNumber(String s, int from, int to) {
+        if (!isAscii(s, from, to)) {
+            try {
+                return Integer.parseInt(s.substring(from, to));
+            } catch (NumberFormatException e) {
+                return Long.MIN_VALUE;
+            }
+        }
+        int p = from;
+        boolean neg = false;
+        if (p < to && (s.charAt(p) == '-' || s.charAt(p) == '+')) {
+            neg = s.charAt(p) == '-';
+            p++;
+        }
+        if (p == to) return Long.MIN_VALUE;
+        long v = 0;
+        for (; p < to; p++) {
+            char c = s.charAt(p);
+            if (c < '0' || c > '9') return Long.MIN_VALUE;
+            v = v * 10 + (c - '0');
+            if (v > 1L << 31) return Long.MIN_VALUE;
+        }
+        if (neg) v = -v;
+        return v < Integer.MIN_VALUE || v > Integer.MAX_VALUE ? Long.MIN_VALUE : v;
     }
 
-    private static int parseOperand(String[] parts, Map<String,Integer> symbols, String line) {
-        if (parts.length < 2) throw new IllegalArgumentException("Falta operando em: " + line);
-        String tok = parts[1];
-        try {
-            int v = Integer.parseInt(tok);
-            if (v < 0 || v > 255) throw new IllegalArgumentException("Endereço fora de 0..255: " + v);
-            return v;
-        } catch (NumberFormatException ignore) {
-            Integer addr = symbols.get(tok.toUpperCase(Locale.ROOT));
-            if (addr == null) throw new IllegalArgumentException("Símbolo não encontrado: " + tok);
-            return addr;
+    /**
+     * Tabela de símbolos em hash aberto. Os nomes ficam em maiúsculas; a busca
+     * compara o trecho do fonte sem criar String (fora do ASCII, converte como antes).
+     */
+    private static final class Symbols {
+        private String[] names = new String[64];
+        private int[] addrs = new int[64];
+        private int[] slots = new int[128];  // índice + 1 em names; 0 = vazio
+        private int count;
+
+        boolean define(String src, int from, int to, int addr) {
+            String name = src.substring(from, to).toUpperCase(Locale.ROOT);
+            if (find(name) >= 0) return false;
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                addrs = Arrays.copyOf(addrs, count * 2);
+            }
+            names[count] = name;
+            addrs[count] = addr;
+            count++;
+            if (count * 2 > slots.length) rehash(); else insert(count - 1);
+            return true;
+        }
+
+        /** @return o endereço do símbolo src[from, to) ou -1 */
+        int find(String src, int from, int to) {
+            if (!isAscii(src, from, to)) return find(src.substring(from, to).toUpperCase(Locale.ROOT));
+            int n = to - from;
+            int mask = slots.length - 1;
+            for (int h = hash(src, from, to) & mask; ; h = (h + 1) & mask) {
+                int k = slots[h];
+                if (k == 0) return -1;
+                String name = names[k - 1];
+                if (name.length() == n && src.regionMatches(true, from, name, 0, n)) return addrs[k - 1];
+            }
+        }
+
+        // Busca exata de um nome já em maiúsculas
+        private int find(String name) {
+            int mask = slots.length - 1;
+            for (int h = hash(name, 0, name.length()) & mask; ; h = (h + 1) & mask) {
+                int k = slots[h];
+                if (k == 0) return -1;
+                if (names[k - 1].equals(name)) return addrs[k - 1];
+            }
+        }
+
+        Map<String,Integer> toMap() {
+            Map<String,Integer> m = new LinkedHashMap<>(count * 2);
+            for (int k = 0; k < count; k++) m.put(names[k], addrs[k]);
+            return m;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            for (int k = 0; k < count; k++) insert(k);
+        }
+
+        private void insert(int k) {
+            int mask = slots.length - 1;
+            int h = hash(names[k], 0, names[k].length()) & mask;
+            while (slots[h] != 0) h = (h + 1) & mask;
+            slots[h] = k + 1;
+        }
+
+        // Hash sem diferenciar maiúsculas ASCII
+        private static int hash(String s, int from, int to) {
+            int h = 0;
+            for (int p = from; p < to; p++) {
+                char c = s.charAt(p);
+                if (c >= 'a' && c <= 'z') c -= 32;
+                h = 31 * h + c;
+            }
+            return h ^ (h >>> 16);
         }
     }
 
-    private static int clampByte(int v) { return v & 0xFF; }
-}
\ No newline at end of file
+    // Terminadores de linha de \R
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u000B' || c == '\f' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    // \s das regex (sem UNICODE_CHARACTER_CLASS)
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isIdentStart(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_';
+    }
+
+    private static boolean isIdentPart(char c) {
+        return isIdentStart(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isAscii(String s, int from, int to) {
+        for (int p = from; p < to; p++) if (s.charAt(p) >= 0x80) return false;
+        return true;
+    }
+}
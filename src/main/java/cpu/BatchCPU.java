@@ -0,0 +1,343 @@
+package cpu;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * K máquinas da mesma ISA em layout de arrays paralelos (struct-of-arrays):
+ * uma única memória byte[K * 256] e arrays int[K] para PC e ACC, com Z/N
+ * empacotadas em byte[K]. Todas avançam em passo único; a cada passo as
+ * máquinas são agrupadas pelo PC e cada grupo executa a instrução num laço
+ * simples sobre os arrays, que o JIT consegue desenrolar/vetorizar.
+ *
+ * Pensado para rodar o mesmo programa com milhares de entradas diferentes.
+ */
+public class BatchCPU {
+    public static final int MEM = 256;
+
+    private static final int FZ = 1, FN = 2;   // bits em flags[]
+
+    public final int machines;
+    private final byte[] mem;
+    private final int[] pc;
+    private final int[] acc;
+    private final byte[] flags;
+    private final int[] ir;
+    private final byte[] status;    // CPU.RUNNING, HALTED ou INVALID
+    private final long[] steps;
+
+    // E/S por máquina: entradas fixas e saídas em buffers primitivos
+    private final int[][] inputs;
+    private final int[] inPos;
+    private final int[][] outputs;
+    private final int[] outLen;
+
+    // Máquinas ainda ativas e buffers do agrupamento por PC
+    private final int[] active;
+    private int activeCount;
+    private final int[] order;
+    private final int[] groupStart = new int[MEM + 1];
+    private final int[] cursor = new int[MEM + 1];
+
+    public BatchCPU(int machines) {
+        if (machines < 1) throw new IllegalArgumentException("Quantidade de máquinas inválida: " + machines);
+        this.machines = machines;
+        mem = new byte[machines * MEM];
+        pc = new int[machines];
+        acc = new int[machines];
+        flags = new byte[machines];
+        ir = new int[machines];
+        status = new byte[machines];
+        steps = new long[machines];
+        inputs = new int[machines][];
+        inPos = new int[machines];
+        outputs = new int[machines][];
+        outLen = new int[machines];
+        active = new int[machines];
+        order = new int[machines];
+        reset();
+    }
+
+    /** Zera registradores, memória, E/S e reativa todas as máquinas. */
+    public void reset() {
+        Arrays.fill(mem, (byte) 0);
+        Arrays.fill(pc, 0);
+        Arrays.fill(acc, 0);
+        Arrays.fill(flags, (byte) 0);
+        Arrays.fill(ir, 0);
+        Arrays.fill(status, (byte) CPU.RUNNING);
+        Arrays.fill(steps, 0);
+        Arrays.fill(inPos, 0);
+        Arrays.fill(outLen, 0);
+        for (int k = 0; k < machines; k++) {
+            outputs[k] = null;
+            active[k] = k;
+        }
+        activeCount = machines;
+    }
+
+    /** Reinicia todas as máquinas e carrega o mesmo programa em cada uma. */
+    public void load(Assembler.AsmOut prog) {
+        reset();
+        byte[] image = new byte[MEM];
+        for (int i = 0; i < Math.min(prog.code.length, MEM); i++) image[i] = (byte) prog.code[i];
+        for (Map.Entry<Integer, Integer> e : prog.dataInits.entrySet()) {
+            int addr = e.getKey();
+            if (addr >= 0 && addr < MEM) image[addr] = (byte) e.getValue().intValue();
+        }
+        for (int k = 0; k < machines; k++) System.arraycopy(image, 0, mem, k * MEM, MEM);
+    }
+
+    /** Valores que a máquina k lerá com IN (depois de acabarem, IN lê 0). */
+    public void setInputs(int k, int... values) {
+        inputs[k] = values;
+        inPos[k] = 0;
+    }
+
+    public void poke(int k, int addr, int value) { mem[k * MEM + (addr & 0xFF)] = (byte) value; }
+
+    // =========================================================
+    // Execução
+    // =========================================================
+
+    /**
+     * Executa até maxSteps passos em todas as máquinas ativas.
+     * @return quantas máquinas continuam rodando (0 = todas pararam)
+     */
+    public int run(long maxSteps) {
+        for (long t = 0; t < maxSteps && activeCount > 0; t++) {
+            stepAll();
+        }
+        return activeCount;
+    }
+
+    private void stepAll() {
+        int n = activeCount;
+        int[] act = active;
+
+        // Ordenação por contagem das máquinas ativas pelo PC
+        int[] gs = groupStart;
+        Arrays.fill(gs, 0);
+        for (int i = 0; i < n; i++) gs[pc[act[i]] + 1]++;
+        for (int p = 0; p < MEM; p++) gs[p + 1] += gs[p];
+        System.arraycopy(gs, 0, cursor, 0, gs.length);
+        for (int i = 0; i < n; i++) {
+            int k = act[i];
+            order[cursor[pc[k]]++] = k;
+        }
+
+        for (int p = 0; p < MEM; p++) {
+            int from = gs[p], to = gs[p + 1];
+            if (from < to) execGroup(p, from, to);
+        }
+
+        // Remove as máquinas que pararam
+        int w = 0;
+        for (int i = 0; i < n; i++) {
+            int k = act[i];
+            if (status[k] == CPU.RUNNING) act[w++] = k;
+        }
+        activeCount = w;
+    }
+
+    // Executa a instrução em p para order[from..to). Se alguma máquina tiver
+    // código diferente nesse PC (código automodificável), o grupo vai para o caminho escalar.
+    private void execGroup(int p, int from, int to) {
+        final byte[] m = mem;
+        final int[] ids = order;
+        int lead = ids[from] * MEM;
+        int op = m[lead + p] & 0xFF;
+        int arg = m[lead + ((p + 1) & 0xFF)] & 0xFF;
+
+        boolean uniform = true;
+        for (int i = from + 1; i < to && uniform; i++) {
+            int b = ids[i] * MEM;
+            uniform = (m[b + p] & 0xFF) == op && (m[b + ((p + 1) & 0xFF)] & 0xFF) == arg;
+        }
+        if (!uniform || op == CPU.IN || op == CPU.OUT) {
+            for (int i = from; i < to; i++) stepOne(ids[i]);
+            return;
+        }
+
+        final int[] a = acc;
+        final int[] pcs = pc;
+        final byte[] f = flags;
+        int next1 = (p + 1) & 0xFF;
+        int next2 = (p + 2) & 0xFF;
+
+        // Caso comum: todas as máquinas no mesmo PC, em ordem (ids[i] == i)
+        if (to - from == machines && denseStep(op, arg, next2)) return;
+
+        switch (op) {
+            case CPU.LOADI:
+                for (int i = from; i < to; i++) { int k = ids[i]; a[k] = arg; f[k] = flagsOf(arg); pcs[k] = next2; }
+                break;
+            case CPU.ADDI:
+                for (int i = from; i < to; i++) { int k = ids[i]; int v = (a[k] + arg) & 0xFF; a[k] = v; f[k] = flagsOf(v); pcs[k] = next2; }
+                break;
+            case CPU.SUBI:
+                for (int i = from; i < to; i++) { int k = ids[i]; int v = (a[k] - arg) & 0xFF; a[k] = v; f[k] = flagsOf(v); pcs[k] = next2; }
+                break;
+            case CPU.LOADM:
+                for (int i = from; i < to; i++) { int k = ids[i]; int v = m[k * MEM + arg] & 0xFF; a[k] = v; f[k] = flagsOf(v); pcs[k] = next2; }
+                break;
+            case CPU.ADDM:
+                for (int i = from; i < to; i++) { int k = ids[i]; int v = (a[k] + (m[k * MEM + arg] & 0xFF)) & 0xFF; a[k] = v; f[k] = flagsOf(v); pcs[k] = next2; }
+                break;
+            case CPU.SUBM:
+                for (int i = from; i < to; i++) { int k = ids[i]; int v = (a[k] - (m[k * MEM + arg] & 0xFF)) & 0xFF; a[k] = v; f[k] = flagsOf(v); pcs[k] = next2; }
+                break;
+            case CPU.STORE:
+                for (int i = from; i < to; i++) { int k = ids[i]; m[k * MEM + arg] = (byte) a[k]; pcs[k] = next2; }
+                break;
+            case CPU.JMP:
+                for (int i = from; i < to; i++) pcs[ids[i]] = arg;
+                break;
+            case CPU.JZ:
+                // Sem desvio: escolhe o destino pela flag
+                for (int i = from; i < to; i++) { int k = ids[i]; int z = f[k] & FZ; pcs[k] = next2 + (arg - next2) * z; }
+                break;
+            case CPU.JN:
+                for (int i = from; i < to; i++) { int k = ids[i]; int neg = (f[k] & FN) >>> 1; pcs[k] = next2 + (arg - next2) * neg; }
+                break;
+            case CPU.HALT:
+                for (int i = from; i < to; i++) { int k = ids[i]; status[k] = CPU.HALTED; pcs[k] = next1; }
+                break;
+            default:
+                for (int i = from; i < to; i++) { int k = ids[i]; status[k] = CPU.INVALID; pcs[k] = next1; }
+        }
+        for (int i = from; i < to; i++) {
+            int k = ids[i];
+            ir[k] = op;
+            steps[k]++;
+        }
+    }
+
+    // Laços sem indireção sobre os arrays inteiros (candidatos à vetorização pelo JIT)
+    private boolean denseStep(int op, int arg, int next2) {
+        final int[] a = acc;
+        final int[] pcs = pc;
+        final byte[] f = flags;
+        final int k = machines;
+        switch (op) {
+            case CPU.LOADI:
+                Arrays.fill(a, arg);
+                Arrays.fill(f, flagsOf(arg));
+                break;
+            case CPU.ADDI:
+                for (int i = 0; i < k; i++) a[i] = (a[i] + arg) & 0xFF;
+                for (int i = 0; i < k; i++) f[i] = flagsOf(a[i]);
+                break;
+            case CPU.SUBI:
+                for (int i = 0; i < k; i++) a[i] = (a[i] - arg) & 0xFF;
+                for (int i = 0; i < k; i++) f[i] = flagsOf(a[i]);
+                break;
+            case CPU.JMP:
+                Arrays.fill(pcs, arg);
+                break;
+            case CPU.JZ:
+                for (int i = 0; i < k; i++) pcs[i] = next2 + (arg - next2) * (f[i] & FZ);
+                break;
+            case CPU.JN:
+                for (int i = 0; i < k; i++) pcs[i] = next2 + (arg - next2) * ((f[i] & FN) >>> 1);
+                break;
+            default:
+                return false;
+        }
+        if (op != CPU.JMP && op != CPU.JZ && op != CPU.JN) Arrays.fill(pcs, next2);
+        Arrays.fill(ir, op);
+        for (int i = 0; i < k; i++) steps[i]++;
+        return true;
+    }
+
+    // Caminho escalar (E/S e código divergente), mesma semântica de CPU.step()
+    private void stepOne(int k) {
+        final byte[] m = mem;
+        int base = k * MEM;
+        int p = pc[k];
+        int op = m[base + p] & 0xFF;
+        p = (p + 1) & 0xFF;
+        int arg = 0;
+        if (hasArg(op)) { arg = m[base + p] & 0xFF; p = (p + 1) & 0xFF; }
+        ir[k] = op;
+        steps[k]++;
+
+        int v = acc[k];
+        switch (op) {
+            case CPU.LOADI: v = arg; break;
+            case CPU.LOADM: v = m[base + arg] & 0xFF; break;
+            case CPU.ADDI:  v = (v + arg) & 0xFF; break;
+            case CPU.SUBI:  v = (v - arg) & 0xFF; break;
+            case CPU.ADDM:  v = (v + (m[base + arg] & 0xFF)) & 0xFF; break;
+            case CPU.SUBM:  v = (v - (m[base + arg] & 0xFF)) & 0xFF; break;
+            case CPU.STORE: m[base + arg] = (byte) v; pc[k] = p; return;
+            case CPU.JMP:   pc[k] = arg; return;
+            case CPU.JZ:    pc[k] = (flags[k] & FZ) != 0 ? arg : p; return;
+            case CPU.JN:    pc[k] = (flags[k] & FN) != 0 ? arg : p; return;
+            case CPU.IN:    v = readInput(k) & 0xFF; break;
+            case CPU.OUT:   writeOutput(k, v); pc[k] = p; return;
+            case CPU.HALT:  status[k] = CPU.HALTED; pc[k] = p; return;
+            default:        status[k] = CPU.INVALID; pc[k] = p; return;
+        }
+        acc[k] = v;
+        flags[k] = flagsOf(v);
+        pc[k] = p;
+    }
+
+    private static boolean hasArg(int op) {
+        return op >= CPU.LOADI && op <= CPU.SUBM;
+    }
+
+    private static byte flagsOf(int v) {
+        // Z = (v - 1) >>> 31 (só para 0..255), N = bit 7
+        return (byte) (((v - 1) >>> 31) | ((v >>> 6) & FN));
+    }
+
+    private int readInput(int k) {
+        int[] in = inputs[k];
+        if (in == null || inPos[k] >= in.length) return 0;
+        return in[inPos[k]++];
+    }
+
+    private void writeOutput(int k, int v) {
+        int[] out = outputs[k];
+        if (out == null) out = outputs[k] = new int[4];
+        else if (outLen[k] == out.length) out = outputs[k] = Arrays.copyOf(out, out.length * 2);
+        out[outLen[k]++] = v;
+    }
+
+    // =========================================================
+    // Estado final por máquina
+    // =========================================================
+
+    public int activeCount() { return activeCount; }
+
+    /** CPU.RUNNING, CPU.HALTED ou CPU.INVALID. */
+    public int status(int k) { return status[k]; }
+
+    public int pc(int k) { return pc[k]; }
+    public int ir(int k) { return ir[k]; }
+    public int acc(int k) { return acc[k]; }
+    public int z(int k) { return flags[k] & FZ; }
+    public int n(int k) { return (flags[k] & FN) >>> 1; }
+    public long steps(int k) { return steps[k]; }
+
+    public int peek(int k, int addr) { return mem[k * MEM + (addr & 0xFF)] & 0xFF; }
+
+    public int[] outputs(int k) {
+        return outputs[k] == null ? new int[0] : Arrays.copyOf(outputs[k], outLen[k]);
+    }
+
+    /** Copia o estado final da máquina k para uma CPU comum (ex.: para inspecionar no simulador). */
+    public void copyTo(int k, CPU cpu) {
+        cpu.PC = pc[k];
+        cpu.IR = ir[k];
+        cpu.ACC = acc[k];
+        cpu.Z = z(k);
+        cpu.N = n(k);
+        cpu.halted = status[k] != CPU.RUNNING;
+        cpu.haltReason = status[k];
+        for (int i = 0; i < MEM; i++) cpu.mem.set(i, mem[k * MEM + i] & 0xFF);
+        cpu.invalidateDecoded();
+    }
+}
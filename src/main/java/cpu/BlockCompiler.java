@@ -0,0 +1,435 @@
+package cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Traduz blocos básicos da ISA de 8 bits em classes JVM geradas em memória,
+ * sem nenhuma biblioteca de bytecode.
+ *
+ * O corpo gerado é linear: as flags saem de
+ * Z = (acc - 1) >>> 31 e N = acc >>> 7, e JZ/JN escolhem o próximo PC com
+ * fall + (alvo - fall) * flag. O único desvio é o do laço, quando o bloco
+ * salta para o próprio início; nesse caso a StackMapTable é escrita à mão.
+ */
+public final class BlockCompiler {
+
+    /**
+     * Bloco compilado: executa o bloco e grava ACC/Z/N/IR/PC de volta na CPU.
+     * Blocos que saltam para o próprio início repetem até maxIter vezes.
+     * @return quantas vezes o bloco foi executado (pelo menos 1)
+     */
+    public interface Compiled {
+        int exec(CPU cpu, int maxIter);
+    }
+
+    /** Descrição de um bloco básico lido da memória. */
+    public static final class Block {
+        public final int start;      // endereço da primeira instrução
+        public final int end;        // primeiro endereço depois do bloco
+        public final int[] ops;
+        public final int[] args;
+        public final int[] stores;   // endereços escritos por STORE dentro do bloco
+        public final int next;       // PC de saída quando não há salto (ou não é tomado)
+
+        Block(int start, int end, int[] ops, int[] args, int[] stores) {
+            this.start = start;
+            this.end = end;
+            this.ops = ops;
+            this.args = args;
+            this.stores = stores;
+            this.next = end & 0xFF;
+        }
+
+        public int count() { return ops.length; }
+    }
+
+    /** Limite de instruções por bloco (mantém os métodos gerados pequenos). */
+    public static final int MAX_BLOCK = 64;
+
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private BlockCompiler() {}
+
+    /**
+     * Lê o bloco básico que começa em start. IN, OUT, HALT e opcodes inválidos
+     * não entram em blocos (ficam para o interpretador); JMP/JZ/JN encerram o bloco.
+     * @return o bloco, ou null se não houver nada compilável em start
+     */
+    public static Block scan(PagedMemory mem, int start) {
+        List<Integer> ops = new ArrayList<>();
+        List<Integer> args = new ArrayList<>();
+        int pc = start;
+
+        while (ops.size() < MAX_BLOCK && pc + 1 < mem.size()) {
+            int op = mem.get(pc);
+            if (!compilable(op)) break;
+            int arg = mem.get(pc + 1);
+            // Operandos fora de 0..255 ficam para o interpretador (que lança a exceção)
+            if (op != CPU.LOADI && op != CPU.ADDI && op != CPU.SUBI && (arg < 0 || arg > 255)) break;
+            ops.add(op);
+            args.add(arg);
+            pc += 2;
+            if (op == CPU.JMP || op == CPU.JZ || op == CPU.JN) break;
+        }
+        if (ops.isEmpty()) return null;
+
+        // Um STORE que escreve no próprio bloco encerra o bloco logo depois dele,
+        // para que o resto seja relido após a escrita
+        int n = ops.size();
+        for (int i = 0; i < n; i++) {
+            if (ops.get(i) == CPU.STORE && args.get(i) >= start && args.get(i) < pc) {
+                n = i + 1;
+                break;
+            }
+        }
+
+        int[] o = new int[n];
+        int[] a = new int[n];
+        List<Integer> st = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            o[i] = ops.get(i);
+            a[i] = args.get(i);
+            if (o[i] == CPU.STORE) st.add(a[i]);
+        }
+        int[] stores = new int[st.size()];
+        for (int i = 0; i < stores.length; i++) stores[i] = st.get(i);
+        return new Block(start, start + 2 * n, o, a, stores);
+    }
+
+    private static boolean compilable(int op) {
+        switch (op) {
+            case CPU.LOADI: case CPU.LOADM: case CPU.STORE:
+            case CPU.ADDI:  case CPU.SUBI:  case CPU.ADDM: case CPU.SUBM:
+            case CPU.JMP:   case CPU.JZ:    case CPU.JN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Gera, carrega e instancia a classe de um bloco. */
+    public static Compiled compile(Block b) {
+        String name = "cpu/jit/Bloco" + SEQ.incrementAndGet();
+        byte[] bytes = generate(name, b);
+        try {
+            // Um ClassLoader por bloco: blocos desotimizados podem ser descarregados
+            Class<?> cls = new Loader(BlockCompiler.class.getClassLoader()).define(name.replace('/', '.'), bytes);
+            return (Compiled) cls.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Falha ao carregar bloco compilado: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class Loader extends ClassLoader {
+        Loader(ClassLoader parent) { super(parent); }
+
+        Class<?> define(String name, byte[] b) { return defineClass(name, b, 0, b.length); }
+    }
+
+    // =========================================================
+    // Geração do arquivo .class
+    // =========================================================
+
+    // Locais do método exec: 0 this, 1 cpu, 2 maxIter, 3 mem, 4 acc, 5 z, 6 n, 7 iterações
+    private static final int L_CPU = 1, L_MAX = 2, L_MEM = 3, L_ACC = 4, L_Z = 5, L_N = 6, L_IT = 7;
+
+    private static final int ALOAD = 0x19, ASTORE = 0x3A, ILOAD = 0x15, ISTORE = 0x36, IINC = 0x84;
+    private static final int ALOAD_0 = 0x2A, SIPUSH = 0x11, BIPUSH = 0x10, ICONST_0 = 0x03, ICONST_1 = 0x04;
+    private static final int IADD = 0x60, ISUB = 0x64, IMUL = 0x68, IAND = 0x7E, IUSHR = 0x7C;
+    private static final int IFEQ = 0x99, IF_ICMPLT = 0xA1;
+    private static final int GETFIELD = 0xB4, PUTFIELD = 0xB5, INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7;
+    private static final int RETURN = 0xB1, IRETURN = 0xAC;
+
+    static byte[] generate(String name, Block b) {
+        Pool cp = new Pool();
+        int thisCls = cp.cls(name);
+        int superCls = cp.cls("java/lang/Object");
+        int iface = cp.cls("cpu/BlockCompiler$Compiled");
+        int cpuCls = cp.cls("cpu/CPU");
+        int memCls = cp.cls("cpu/PagedMemory");
+        int objInit = cp.method("java/lang/Object", "<init>", "()V");
+        int mGet = cp.method("cpu/PagedMemory", "get", "(I)I");
+        int mSet = cp.method("cpu/PagedMemory", "set", "(II)V");
+        int fMem = cp.field("cpu/CPU", "mem", "Lcpu/PagedMemory;");
+        int fAcc = cp.field("cpu/CPU", "ACC", "I");
+        int fZ = cp.field("cpu/CPU", "Z", "I");
+        int fN = cp.field("cpu/CPU", "N", "I");
+        int fIR = cp.field("cpu/CPU", "IR", "I");
+        int fPC = cp.field("cpu/CPU", "PC", "I");
+        int nInit = cp.utf8("<init>");
+        int dInit = cp.utf8("()V");
+        int nExec = cp.utf8("exec");
+        int dExec = cp.utf8("(Lcpu/CPU;I)I");
+        int nCode = cp.utf8("Code");
+        int nFrames = cp.utf8("StackMapTable");
+
+        // <init>: super()
+        Code init = new Code();
+        init.op(ALOAD_0).op(INVOKESPECIAL).u2(objInit).op(RETURN);
+
+        // exec(CPU, int)
+        Code c = new Code();
+        c.var(ALOAD, L_CPU).op(GETFIELD).u2(fMem).var(ASTORE, L_MEM);
+        c.var(ALOAD, L_CPU).op(GETFIELD).u2(fAcc).var(ISTORE, L_ACC);
+        c.var(ALOAD, L_CPU).op(GETFIELD).u2(fZ).var(ISTORE, L_Z);
+        c.var(ALOAD, L_CPU).op(GETFIELD).u2(fN).var(ISTORE, L_N);
+        c.op(ICONST_0).var(ISTORE, L_IT);
+
+        int last = b.ops.length - 1;
+        int term = b.ops[last];
+        boolean hasJump = term == CPU.JMP || term == CPU.JZ || term == CPU.JN;
+        int bodyEnd = hasJump ? last : last + 1;
+        // Bloco que salta para o próprio início: o laço roda dentro do método gerado
+        boolean selfLoop = hasJump && b.args[last] == b.start;
+        int loopPos = c.pos();
+
+        boolean setsFlags = false;
+        for (int i = 0; i < bodyEnd; i++) {
+            int arg = b.args[i];
+            switch (b.ops[i]) {
+                case CPU.LOADI:
+                    c.push(arg & 0xFF).var(ISTORE, L_ACC);
+                    setsFlags = true;
+                    break;
+                case CPU.LOADM:
+                    c.var(ALOAD, L_MEM).push(arg).op(INVOKEVIRTUAL).u2(mGet).push(0xFF).op(IAND).var(ISTORE, L_ACC);
+                    setsFlags = true;
+                    break;
+                case CPU.STORE:
+                    // set() copia a página compartilhada na primeira escrita
+                    c.var(ALOAD, L_MEM).push(arg).var(ILOAD, L_ACC).op(INVOKEVIRTUAL).u2(mSet);
+                    break;
+                case CPU.ADDI:
+                    c.var(ILOAD, L_ACC).push(arg).op(IADD).push(0xFF).op(IAND).var(ISTORE, L_ACC);
+                    setsFlags = true;
+                    break;
+                case CPU.SUBI:
+                    c.var(ILOAD, L_ACC).push(arg).op(ISUB).push(0xFF).op(IAND).var(ISTORE, L_ACC);
+                    setsFlags = true;
+                    break;
+                case CPU.ADDM:
+                    c.var(ILOAD, L_ACC).var(ALOAD, L_MEM).push(arg).op(INVOKEVIRTUAL).u2(mGet).op(IADD)
+                            .push(0xFF).op(IAND).var(ISTORE, L_ACC);
+                    setsFlags = true;
+                    break;
+                case CPU.SUBM:
+                    c.var(ILOAD, L_ACC).var(ALOAD, L_MEM).push(arg).op(INVOKEVIRTUAL).u2(mGet).op(ISUB)
+                            .push(0xFF).op(IAND).var(ISTORE, L_ACC);
+                    setsFlags = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opcode não compilável: " + b.ops[i]);
+            }
+        }
+
+        if (setsFlags) {
+            c.var(ILOAD, L_ACC).op(ICONST_1).op(ISUB).op(BIPUSH).u1(31).op(IUSHR).var(ISTORE, L_Z);
+            c.var(ILOAD, L_ACC).op(BIPUSH).u1(7).op(IUSHR).var(ISTORE, L_N);
+        }
+        c.op(IINC).u1(L_IT).u1(1);
+
+        int exitJump = -1;
+        if (selfLoop) {
+            // JZ/JN: sai quando a flag é 0; em todos os casos volta enquanto it < maxIter
+            if (term != CPU.JMP) exitJump = c.jump(IFEQ, term == CPU.JZ ? L_Z : L_N);
+            c.var(ILOAD, L_IT).var(ILOAD, L_MAX).branch(IF_ICMPLT, loopPos);
+        }
+        int exitPos = c.pos();
+        if (exitJump >= 0) c.patch(exitJump, exitPos);
+
+        c.var(ALOAD, L_CPU).var(ILOAD, L_ACC).op(PUTFIELD).u2(fAcc);
+        c.var(ALOAD, L_CPU).var(ILOAD, L_Z).op(PUTFIELD).u2(fZ);
+        c.var(ALOAD, L_CPU).var(ILOAD, L_N).op(PUTFIELD).u2(fN);
+        c.var(ALOAD, L_CPU).push(b.ops[last]).op(PUTFIELD).u2(fIR);
+
+        c.var(ALOAD, L_CPU);
+        if (term == CPU.JMP) {
+            c.push(b.args[last]);
+        } else if (term == CPU.JZ || term == CPU.JN) {
+            // next = fall + (alvo - fall) * flag
+            c.var(ILOAD, term == CPU.JZ ? L_Z : L_N).push(b.args[last] - b.next).op(IMUL)
+                    .push(b.next).op(IADD);
+        } else {
+            c.push(b.next);
+        }
+        c.op(PUTFIELD).u2(fPC);
+        c.var(ILOAD, L_IT).op(IRETURN);
+
+        // Quadros da StackMapTable: início do laço (completo) e saída (mesmos locais)
+        byte[] frames = null;
+        if (selfLoop) {
+            ByteArrayOutputStream fb = new ByteArrayOutputStream();
+            DataOutputStream f = new DataOutputStream(fb);
+            try {
+                f.writeShort(exitJump >= 0 ? 2 : 1);
+                f.writeByte(255);
+                f.writeShort(loopPos);
+                f.writeShort(8);
+                f.writeByte(7); f.writeShort(thisCls);
+                f.writeByte(7); f.writeShort(cpuCls);
+                f.writeByte(1);
+                f.writeByte(7); f.writeShort(memCls);
+                f.writeByte(1); f.writeByte(1); f.writeByte(1); f.writeByte(1);
+                f.writeShort(0);
+                if (exitJump >= 0) {
+                    f.writeByte(251);
+                    f.writeShort(exitPos - loopPos - 1);
+                }
+                f.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            frames = fb.toByteArray();
+        }
+
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52);                 // Java 8
+            cp.write(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+            out.writeShort(thisCls);
+            out.writeShort(superCls);
+            out.writeShort(1);
+            out.writeShort(iface);
+            out.writeShort(0);                  // campos
+            out.writeShort(2);                  // métodos
+            writeMethod(out, 0x0001, nInit, dInit, nCode, init, 1, 1, 0, null);
+            writeMethod(out, 0x0001, nExec, dExec, nCode, c, 4, 8, nFrames, frames);
+            out.writeShort(0);                  // atributos
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, int access, int name, int desc, int codeAttr,
+                                    Code code, int maxStack, int maxLocals, int framesAttr, byte[] frames)
+            throws IOException {
+        byte[] bc = code.toByteArray();
+        int attrLen = frames == null ? 0 : 6 + frames.length;
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1);
+        out.writeShort(codeAttr);
+        out.writeInt(12 + bc.length + attrLen);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bc.length);
+        out.write(bc);
+        out.writeShort(0);                      // exceções
+        if (frames == null) {
+            out.writeShort(0);                  // atributos do Code
+        } else {
+            out.writeShort(1);
+            out.writeShort(framesAttr);
+            out.writeInt(frames.length);
+            out.write(frames);
+        }
+    }
+
+    /** Pool de constantes mínimo (Utf8, Class, NameAndType, Fieldref, Methodref). */
+    private static final class Pool {
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buf);
+        private final Map<String, Integer> index = new HashMap<>();
+        private int next = 1;
+
+        int utf8(String s) {
+            return entry("U" + s, () -> { out.writeByte(1); out.writeUTF(s); });
+        }
+
+        int cls(String name) {
+            int u = utf8(name);
+            return entry("C" + name, () -> { out.writeByte(7); out.writeShort(u); });
+        }
+
+        int field(String owner, String name, String desc) {
+            return ref(9, owner, name, desc);
+        }
+
+        int method(String owner, String name, String desc) {
+            return ref(10, owner, name, desc);
+        }
+
+        private int ref(int tag, String owner, String name, String desc) {
+            int c = cls(owner);
+            int n = utf8(name);
+            int d = utf8(desc);
+            int nt = entry("N" + name + ":" + desc, () -> { out.writeByte(12); out.writeShort(n); out.writeShort(d); });
+            return entry(tag + owner + "." + name + ":" + desc, () -> { out.writeByte(tag); out.writeShort(c); out.writeShort(nt); });
+        }
+
+        private int entry(String key, Writer w) {
+            Integer idx = index.get(key);
+            if (idx != null) return idx;
+            try { w.write(); } catch (IOException e) { throw new IllegalStateException(e); }
+            index.put(key, next);
+            return next++;
+        }
+
+        void write(DataOutputStream dst) throws IOException {
+            out.flush();
+            dst.writeShort(next);
+            buf.writeTo(dst);
+        }
+
+        private interface Writer { void write() throws IOException; }
+    }
+
+    /** Buffer de bytecode com helpers encadeáveis. */
+    private static final class Code {
+        private byte[] buf = new byte[256];
+        private int len;
+
+        Code op(int opcode) { return u1(opcode); }
+
+        Code u1(int v) {
+            if (len == buf.length) buf = Arrays.copyOf(buf, len * 2);
+            buf[len++] = (byte) v;
+            return this;
+        }
+
+        Code u2(int v) { return u1(v >>> 8).u1(v); }
+
+        Code push(int v) { return op(SIPUSH).u2(v & 0xFFFF); }
+
+        Code var(int opcode, int slot) { return op(opcode).u1(slot); }
+
+        int pos() { return len; }
+
+        /** Desvio para trás até target. */
+        Code branch(int opcode, int target) {
+            int at = len;
+            return op(opcode).u2((target - at) & 0xFFFF);
+        }
+
+        /** Carrega slot e emite um desvio para frente; devolve a posição a corrigir com patch(). */
+        int jump(int opcode, int slot) {
+            var(ILOAD, slot);
+            int at = len;
+            op(opcode).u2(0);
+            return at;
+        }
+
+        void patch(int at, int target) {
+            int off = target - at;
+            buf[at + 1] = (byte) (off >>> 8);
+            buf[at + 2] = (byte) off;
+        }
+
+        byte[] toByteArray() { return Arrays.copyOf(buf, len); }
+    }
+}
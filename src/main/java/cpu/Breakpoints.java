@@ -0,0 +1,139 @@
+package cpu;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Breakpoints de execução e watchpoints de leitura/escrita, cada tipo num
+ * mapa de 64 Ki bits (um por endereço de 16 bits, para servir também ao modo
+ * estendido). Ligados na CPU (cpu.breakpoints), a CPU para com
+ * status BREAK antes de executar uma instrução marcada (inclusive a primeira
+ * de run(); ao continuar, a instrução em que parou é executada) ou depois de
+ * uma instrução que leu/escreveu um endereço vigiado.
+ *
+ * Breakpoints de execução são testados no próprio caminho rápido de run()
+ * (um teste de bit por instrução); só os watchpoints exigem o caminho
+ * instrumentado.
+ *
+ * Cada marca pode ter uma Condition (já compilada): ela só é avaliada quando
+ * o bit está ligado, e a CPU só para se ela for verdadeira.
+ *
+ * Altere só com a CPU parada (não é seguro mexer durante o turbo).
+ */
+public class Breakpoints {
+
+    /** Tipos (também usados em hitKind). */
+    public static final int EXEC = 0, READ = 1, WRITE = 2;
+
+    private static final int ADDRS = PagedMemory.MAX_SIZE;
+
+    private final long[][] bits = new long[3][ADDRS / 64];
+    // Crescem até ADDRS quando aparece uma condição num endereço alto
+    private final Condition[][] conditions = new Condition[3][PagedMemory.SIZE];
+    private final int[] counts = new int[3];
+
+    /** Motivo da última parada: tipo e endereço. */
+    public int hitKind = -1, hitAddr = -1;
+
+    public void set(int kind, int addr, boolean on) {
+        if (addr < 0 || addr >= ADDRS) throw new IllegalArgumentException("Endereço inválido: " + addr);
+        long[] b = bits[kind];
+        long mask = 1L << addr;
+        boolean was = (b[addr >>> 6] & mask) != 0;
+        if (was == on) return;
+        if (on) { b[addr >>> 6] |= mask; counts[kind]++; }
+        else { b[addr >>> 6] &= ~mask; counts[kind]--; setCondition(kind, addr, null); }
+    }
+
+    /** Condição da marca (null = para sempre); a marca precisa estar ligada para valer. */
+    public void setCondition(int kind, int addr, Condition c) {
+        if (addr >= conditions[kind].length) {
+            if (c == null) return;
+            conditions[kind] = Arrays.copyOf(conditions[kind], ADDRS);
+        }
+        conditions[kind][addr] = c;
+    }
+
+    public Condition getCondition(int kind, int addr) {
+        return addr < conditions[kind].length ? conditions[kind][addr] : null;
+    }
+
+    public boolean has(int kind, int addr) {
+        return addr >= 0 && addr < ADDRS && (bits[kind][addr >>> 6] & 1L << addr) != 0;
+    }
+
+    public boolean isEmpty() { return counts[EXEC] + counts[READ] + counts[WRITE] == 0; }
+
+    /** true se há watchpoints de leitura ou escrita (eles exigem o caminho instrumentado). */
+    public boolean hasWatchpoints() { return counts[READ] + counts[WRITE] != 0; }
+
+    // Mapa de bits de EXEC para os laços rápidos da CPU, ou null se não há breakpoints de execução
+    long[] execBits() { return counts[EXEC] == 0 ? null : bits[EXEC]; }
+
+    public void clear() {
+        for (long[] b : bits) Arrays.fill(b, 0);
+        for (Condition[] c : conditions) Arrays.fill(c, null);
+        Arrays.fill(counts, 0);
+        hitKind = -1;
+        hitAddr = -1;
+    }
+
+    /** true se alguma instrução da linha (debugMap: endereço → linha) tem breakpoint. */
+    public boolean hasLine(Map<Integer, Integer> debugMap, int line) {
+        for (Map.Entry<Integer, Integer> e : debugMap.entrySet()) {
+            if (e.getValue() == line && has(EXEC, e.getKey())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Liga o breakpoint na primeira instrução da linha, ou desliga em todas as dela.
+     * @return false se a linha não tem instruções
+     */
+    public boolean setLine(Map<Integer, Integer> debugMap, int line, boolean on) {
+        int first = firstAddress(debugMap, line);
+        if (first < 0) return false;
+        if (on) {
+            set(EXEC, first, true);
+        } else {
+            for (Map.Entry<Integer, Integer> e : debugMap.entrySet()) {
+                if (e.getValue() == line) set(EXEC, e.getKey(), false);
+            }
+        }
+        return true;
+    }
+
+    /** Endereço da primeira instrução da linha, ou -1 se ela não tem instruções. */
+    public static int firstAddress(Map<Integer, Integer> debugMap, int line) {
+        int first = -1;
+        for (Map.Entry<Integer, Integer> e : debugMap.entrySet()) {
+            int addr = e.getKey();
+            if (e.getValue() == line && (first < 0 || addr < first)) first = addr;
+        }
+        return first;
+    }
+
+    // Breakpoint de execução em pc (a instrução ainda não foi executada); os registradores da CPU precisam estar atualizados
+    boolean checkExec(CPU cpu, int pc) {
+        return (bits[EXEC][pc >>> 6] & 1L << pc) != 0 && pass(cpu, EXEC, pc) && hit(EXEC, pc);
+    }
+
+    // Chamado pela CPU depois de cada instrução do caminho instrumentado (pc = próxima instrução)
+    boolean check(CPU cpu, int pc, int read, int write) {
+        if (checkExec(cpu, pc)) return true;
+        if (read >= 0 && (bits[READ][read >>> 6] & 1L << read) != 0 && pass(cpu, READ, read)) return hit(READ, read);
+        if (write >= 0 && (bits[WRITE][write >>> 6] & 1L << write) != 0 && pass(cpu, WRITE, write)) return hit(WRITE, write);
+        return false;
+    }
+
+    private boolean pass(CPU cpu, int kind, int addr) {
+        Condition c = getCondition(kind, addr);
+        return c == null || c.test(cpu);
+    }
+
+    private boolean hit(int kind, int addr) {
+        hitKind = kind;
+        hitAddr = addr;
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package cpu;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * E/S sem interação: IN consome valores de uma fonte lida em lotes e
+ * OUT grava cada valor num buffer primitivo. Quando a fonte acaba, IN lê 0
+ * (como o diálogo cancelado) e missingInputs é incrementado.
+ */
+public class BufferedIO implements IODevice {
+
+    /** Fonte de entrada em lotes: preenche buf e devolve quantos valores leu (-1 no fim). */
+    public interface Source {
+        int fill(int[] buf) throws IOException;
+    }
+
+    private static final int BATCH = 256;
+
+    private final Source source;
+    private final int[] in = new int[BATCH];
+    private int inPos, inLen;
+    private boolean eof;
+
+    private int[] out = new int[16];
+    private int outLen;
+
+    /** Quantas vezes IN foi executado sem valor disponível. */
+    public int missingInputs;
+
+    public BufferedIO(Source source) { this.source = source; }
+
+    /** Entradas fixas. */
+    public static BufferedIO of(int... values) {
+        final int[] vals = values.clone();
+        return new BufferedIO(new Source() {
+            private int pos;
+
+            @Override
+            public int fill(int[] buf) {
+                if (pos >= vals.length) return -1;
+                int n = Math.min(buf.length, vals.length - pos);
+                System.arraycopy(vals, pos, buf, 0, n);
+                pos += n;
+                return n;
+            }
+        });
+    }
+
+    /** Entradas geradas: o i-ésimo IN lê f(i). Fonte infinita. */
+    public static BufferedIO generated(IntUnaryOperator f) {
+        return new BufferedIO(new Source() {
+            private int i;
+
+            @Override
+            public int fill(int[] buf) {
+                for (int k = 0; k < buf.length; k++) buf[k] = f.applyAsInt(i++);
+                return buf.length;
+            }
+        });
+    }
+
+    /**
+     * Inteiros separados por espaços ou quebras de linha, lidos do arquivo sob demanda.
+     * Cada palavra é um número completo (ex.: "-3"); "5-3" é um erro, não 5 e -3.
+     */
+    public static BufferedIO fromFile(Path file) throws IOException {
+        return fromReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Como fromFile, para qualquer Reader (ex.: stdin). O Reader é fechado no fim.
+     * Uma palavra que não é inteiro faz IN lançar UncheckedIOException.
+     */
+    public static BufferedIO fromReader(Reader reader) {
+        final BufferedReader r = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        return new BufferedIO(new Source() {
+            private final StringBuilder word = new StringBuilder();
+            private boolean closed;
+
+            @Override
+            public int fill(int[] buf) throws IOException {
+                if (closed) return -1;
+                int n = 0;
+                while (n < buf.length) {
+                    int ch = r.read();
+                    if (ch >= 0 && !Character.isWhitespace(ch)) {
+                        word.append((char) ch);
+                        continue;
+                    }
+                    if (word.length() > 0) buf[n++] = parse();
+                    if (ch < 0) {
+                        r.close();
+                        closed = true;
+                        return n == 0 ? -1 : n;
+                    }
+                }
+                return n;
+            }
+
+            private int parse() throws IOException {
+                String w = word.toString();
+                word.setLength(0);
+                try {
+                    return Integer.parseInt(w);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Entrada não é um inteiro: " + w);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int read() {
+        if (inPos == inLen && !refill()) {
+            missingInputs++;
+            return 0;
+        }
+        return in[inPos++];
+    }
+
+    private boolean refill() {
+        if (eof) return false;
+        try {
+            int n = source.fill(in);
+            if (n <= 0) { eof = true; return false; }
+            inPos = 0;
+            inLen = n;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(int value) {
+        if (outLen == out.length) out = Arrays.copyOf(out, outLen * 2);
+        out[outLen++] = value;
+    }
+
+    public int outputCount() { return outLen; }
+
+    public int output(int i) {
+        if (i < 0 || i >= outLen) throw new IndexOutOfBoundsException("Saída inexistente: " + i);
+        return out[i];
+    }
+
+    /** Cópia dos valores gravados por OUT. */
+    public int[] outputs() { return Arrays.copyOf(out, outLen); }
+
+    /** Esquece as saídas já gravadas (as entradas continuam de onde pararam). */
+    public void clearOutputs() { outLen = 0; }
+}
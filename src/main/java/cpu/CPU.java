@@ -1,9 +1,17 @@
 package cpu;
 
-import javax.swing.JOptionPane;
+import java.util.Arrays;
+import java.util.Map;
 
 public class CPU {
-    public final int[] mem = new int[256];
+    /** Memória de bytes em páginas com cópia na escrita (ver PagedMemory): 256 células, ou até 64 KiB no modo estendido. */
+    public final PagedMemory mem;
+    /**
+     * Modo estendido (CPU.wide()): endereços de 16 bits, e os operandos de LOADM, STORE,
+     * ADDM, SUBM, JMP, JZ e JN ocupam 2 bytes (little-endian); os imediatos de LOADI,
+     * ADDI e SUBI continuam com 1 byte. Monte com Assembler.assembleWide().
+     */
+    public final boolean wide;
 
     public int PC;
     public int IR;
@@ -12,6 +20,24 @@ public class CPU {
     public int N;
     public boolean halted;
 
+    /** Dispositivo usado por IN/OUT (o simulador gráfico usa DialogIO). */
+    public IODevice io = IODevice.NULL;
+    /** Rastro binário das instruções executadas (null = desligado). */
+    public TraceBuffer trace;
+    /** Contadores de desempenho (null = desligados). */
+    public PerfCounters counters;
+    /** Detecção de laço infinito (null = desligada). */
+    public LoopDetector loopDetector;
+    /** Contagem de execuções por PC (null = desligada). */
+    public Profiler profiler;
+    /** Breakpoints e watchpoints (null ou vazio = desligados; só EXEC = um teste de bit no caminho rápido). */
+    public Breakpoints breakpoints;
+    /**
+     * Faz run() parar antes de executar IN (status INPUT), sem chamar io.read():
+     * quem roda a CPU em outra thread lê a entrada onde puder e executa o IN por step().
+     */
+    public boolean stopAtInput;
+
     // ISA
     public static final int LOADI = 0x01;
     public static final int LOADM = 0x02;
@@ -27,11 +53,182 @@ public class CPU {
     public static final int IN    = 0xF0;
     public static final int OUT   = 0xF1;
 
-    public CPU() { reset(); }
+    // Status devolvidos por stepQuiet() e run()
+    public static final int RUNNING = 0;  // ainda executando
+    public static final int HALTED  = 1;  // encontrou HALT
+    public static final int BUDGET  = 2;  // orçamento de passos esgotado
+    public static final int INVALID = 3;  // opcode inválido
+    public static final int LOOP    = 4;  // laço infinito comprovado (LoopDetector)
+    public static final int BREAK   = 5;  // parou num breakpoint/watchpoint (a CPU não fica halted)
+    public static final int INPUT   = 6;  // parou antes de um IN, com stopAtInput ligado (a CPU não fica halted)
+
+    /** Motivo da parada (HALTED ou INVALID) quando halted == true. */
+    public int haltReason;
+    /** Quantidade de instruções executadas pela última chamada de run(). */
+    public long lastRunSteps;
+
+    // Última instrução executada pelo núcleo instrumentado
+    private int lastPC, lastArg, lastIn, lastLen;
+    private int lastRead = -1, lastWrite = -1;
+    // PC em que run() parou por BREAK: continuar dali executa a instrução marcada (-1 = nenhum)
+    private int resumePC = -1;
+
+    // Índices de tratador usados pela cache de pré-decodificação (0 = não decodificado)
+    private static final byte D_NONE = 0, D_LOADI = 1, D_LOADM = 2, D_STORE = 3, D_ADDI = 4, D_SUBI = 5,
+            D_ADDM = 6, D_SUBM = 7, D_JMP = 8, D_JZ = 9, D_JN = 10, D_IN = 11, D_OUT = 12, D_HALT = 13, D_INV = 14;
+
+    // Memória pré-decodificada: arrays paralelos a mem, preenchidos sob demanda
+    private byte[] dOp;
+    private byte[] dIr;   // opcode original, para IR
+    private int[] dArg;
+    private int[] dNext;
+
+    // Maior endereço (mem.size() - 1)
+    private final int mask;
+
+    public CPU() { this(new PagedMemory(), false); }
+
+    private CPU(PagedMemory mem, boolean wide) {
+        this.mem = mem;
+        this.wide = wide;
+        mask = mem.size() - 1;
+    }
+
+    /** CPU no modo estendido com 64 KiB de memória. */
+    public static CPU wide() { return wide(PagedMemory.MAX_SIZE); }
+
+    /** CPU no modo estendido com memSize bytes (potência de 2, de 256 a 65536). */
+    public static CPU wide(int memSize) { return new CPU(new PagedMemory(memSize), true); }
 
     public void reset() {
         PC = 0; IR = 0; ACC = 0; Z = 0; N = 0; halted = false;
-        for (int i = 0; i < mem.length; i++) mem[i] = 0;
+        haltReason = RUNNING; lastRunSteps = 0;
+        lastRead = -1; lastWrite = -1; resumePC = -1;
+        mem.clear();
+        invalidateDecoded();
+        if (loopDetector != null) loopDetector.reset(this);
+    }
+
+    /**
+     * Reinicia a CPU e copia o código e os dados iniciais (DEC) de um programa montado.
+     * No modo estendido recusa (sem mudar nada) o que não couber na memória.
+     */
+    public void load(Assembler.AsmOut out) {
+        if (wide) {
+            if (out.code.length > mem.size()) throw new IllegalArgumentException("Código excede " + mem.size() + " bytes.");
+            for (int addr : out.dataInits.keySet()) {
+                if (addr < 0 || addr >= mem.size()) throw new IllegalArgumentException("Variável fora da memória de " + mem.size() + " bytes: " + addr);
+            }
+        }
+        reset();
+        int len = Math.min(out.code.length, mem.size());
+        for (int i = 0; i < len; i++) mem.set(i, out.code[i]);
+        for (Map.Entry<Integer,Integer> e : out.dataInits.entrySet()) {
+            int addr = e.getKey();
+            if (addr >= 0 && addr < mem.size()) mem.set(addr, e.getValue() & 0xFF);
+        }
+        memoryLoaded();
+    }
+
+    // Avisa as caches depois que mem foi preenchida por fora do núcleo (load, ProgramImage)
+    void memoryLoaded() {
+        invalidateDecoded();
+        if (loopDetector != null) loopDetector.reset(this);
+    }
+
+    /** Captura o estado atual sem copiar a memória: as páginas passam a ser compartilhadas. */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /** Volta ao estado de um snapshot (de qualquer CPU da mesma configuração), também sem copiar a memória. */
+    public void restore(Snapshot s) {
+        s.copyTo(this);
+        lastRead = -1; lastWrite = -1; resumePC = -1;
+        invalidateDecoded();
+        if (loopDetector != null) loopDetector.reset(this);
+    }
+
+    /**
+     * Nova CPU com o mesmo estado. As duas compartilham as páginas de memória
+     * até a primeira escrita de cada uma (PagedMemory.fork()).
+     * O dispositivo de E/S é compartilhado: troque child.io se cada ramo precisar
+     * de entradas próprias. O rastro não é copiado.
+     */
+    public CPU fork() {
+        CPU child = new CPU(mem.fork(), wide);
+        child.PC = PC; child.IR = IR; child.ACC = ACC; child.Z = Z; child.N = N;
+        child.halted = halted;
+        child.haltReason = haltReason;
+        child.io = io;
+        child.setPredecode(isPredecode());
+        return child;
+    }
+
+    /**
+     * Liga/desliga a cache de pré-decodificação usada por run().
+     * Quem escrever em mem diretamente (fora de STORE) com a cache ligada
+     * deve chamar invalidateDecoded() depois.
+     */
+    public void setPredecode(boolean on) {
+        if (on && dOp == null) {
+            dOp = new byte[mem.size()];
+            dIr = new byte[mem.size()];
+            dArg = new int[mem.size()];
+            dNext = new int[mem.size()];
+        } else if (!on) {
+            dOp = null; dIr = null; dArg = null; dNext = null;
+        }
+    }
+
+    public boolean isPredecode() { return dOp != null; }
+
+    /** Descarta todas as instruções pré-decodificadas. */
+    public void invalidateDecoded() {
+        if (dOp != null) Arrays.fill(dOp, D_NONE);
+    }
+
+    // Para quem escreve em mem fora do interpretador (blocos compilados do TieredEngine)
+    void invalidateDecodedAt(int a) {
+        if (dOp != null) invalidateAt(a);
+    }
+
+    // Uma escrita em a afeta a instrução em a e a que tem o operando em a (a - 1; no modo estendido, também a - 2)
+    private void invalidateAt(int a) {
+        byte[] d = dOp;
+        int prev = (a - 1) & mask;
+        if ((d[a] | d[prev]) != D_NONE) { d[a] = D_NONE; d[prev] = D_NONE; }
+        if (wide) d[(a - 2) & mask] = D_NONE;
+    }
+
+    private byte decode(int pc) {
+        int op = mem.get(pc);
+        byte h;
+        int len = wide ? 3 : 2;   // bytes da instrução (os imediatos sempre têm 2)
+        switch (op) {
+            case LOADI: h = D_LOADI; len = 2; break;
+            case LOADM: h = D_LOADM; break;
+            case STORE: h = D_STORE; break;
+            case ADDI:  h = D_ADDI;  len = 2; break;
+            case SUBI:  h = D_SUBI;  len = 2; break;
+            case ADDM:  h = D_ADDM;  break;
+            case SUBM:  h = D_SUBM;  break;
+            case JMP:   h = D_JMP;   break;
+            case JZ:    h = D_JZ;    break;
+            case JN:    h = D_JN;    break;
+            case IN:    h = D_IN;   len = 1; break;
+            case OUT:   h = D_OUT;  len = 1; break;
+            case HALT:  h = D_HALT; len = 1; break;
+            default:    h = D_INV;  len = 1;
+        }
+        int arg = 0;
+        if (len > 1) arg = mem.get((pc + 1) & mask);
+        if (len > 2) arg |= mem.get((pc + 2) & mask) << 8;
+        dIr[pc] = (byte) op;
+        dArg[pc] = arg;
+        dNext[pc] = (pc + len) & mask;
+        dOp[pc] = h;
+        return h;
     }
 
     private int to8(int v) { return v & 0xFF; }
@@ -43,79 +240,453 @@ public class CPU {
     }
 
     private int clampAddr(int a) {
-        if (a < 0 || a > 255) throw new IllegalArgumentException("Endereço inválido: " + a);
+        if (a < 0 || a > mask) throw new IllegalArgumentException("Endereço inválido: " + a);
         return a;
     }
 
+    /**
+     * Endereço lido pela última instrução executada por step() ou pelo caminho
+     * instrumentado de run(), ou -1 (nenhum, ou depois de reset/restore).
+     * O caminho rápido de run() não atualiza este valor.
+     */
+    public int lastReadAddr() { return lastRead; }
+
+    /** Como lastReadAddr(), para o endereço escrito. */
+    public int lastWriteAddr() { return lastWrite; }
+
     public String step() {
         if (halted) return "HALT";
-
-        int op = mem[PC]; IR = op;
+        checkHooks();
+        resumePC = -1;
         int currentPC = PC;
-        PC = to8(PC + 1);
-
-        boolean needsArg = (op == LOADI || op == LOADM || op == STORE ||
-                op == ADDI  || op == SUBI  || op == JMP   || op == JZ ||
-                op == JN    || op == ADDM  || op == SUBM);
-        int arg = 0;
-        if (needsArg) { arg = mem[PC]; PC = to8(PC + 1); }
+        afterStep(exec());
+        return describe(currentPC, IR, IR == IN ? lastIn : lastArg, ACC, Z, N);
+    }
 
+    /**
+     * Texto de log de uma instrução já executada (o mesmo que step() devolve).
+     * Para IN, arg é o valor lido; Z/N/ACC são os valores depois da instrução.
+     */
+    public static String describe(int pc, int op, int arg, int acc, int z, int n) {
         String log;
 
         // =========================================================
         // CORREÇÃO DO SWITCH PARA JAVA 8
         // =========================================================
+        switch (op) {
+            case LOADI: log = "LOADI " + arg; break;
+            case LOADM: log = "LOADM [" + arg + "] -> " + acc; break;
+            case STORE: log = "STORE [" + arg + "] <- " + acc; break;
+            case ADDI:  log = "ADDI " + arg + " -> " + acc; break;
+            case SUBI:  log = "SUBI " + arg + " -> " + acc; break;
+            case ADDM:  log = "ADDM [" + arg + "] -> ACC=" + acc; break;
+            case SUBM:  log = "SUBM [" + arg + "] -> ACC=" + acc; break;
+            case JMP:   log = "JMP " + arg; break;
+            // JZ/JN não alteram as flags: o salto foi tomado se a flag está em 1
+            case JZ:    log = z == 1 ? "JZ -> salto para " + arg : "JZ ignorado"; break;
+            case JN:    log = n == 1 ? "JN -> salto (negativo) para " + arg : "JN ignorado"; break;
+            case IN:    log = "IN -> Leu " + arg; break;
+            case OUT:   log = "OUT -> ACC = " + acc; break;
+            case HALT:  log = "HALT"; break;
+            default:    log = "INV 0x" + Integer.toHexString(op);
+        }
+        // =========================================================
+
+        return String.format("PC=%03d | IR=0x%02X | ACC=%d | Z=%d | N=%d :: %s", pc, op, acc, z, n, log);
+    }
+
+    // Núcleo sem strings usado por step() e pelo caminho instrumentado de run()
+    private int exec() {
+        int op = mem.get(PC); IR = op;
+        lastPC = PC;
+        lastRead = -1; lastWrite = -1;
+        PC = (PC + 1) & mask;
+
+        boolean needsArg = (op == LOADI || op == LOADM || op == STORE ||
+                op == ADDI  || op == SUBI  || op == JMP   || op == JZ ||
+                op == JN    || op == ADDM  || op == SUBM);
+        int arg = 0;
+        lastLen = 1;
+        if (needsArg) {
+            arg = mem.get(PC); PC = (PC + 1) & mask;
+            lastLen = 2;
+            // Operando de endereço com 2 bytes no modo estendido
+            if (wide && op != LOADI && op != ADDI && op != SUBI) { arg |= mem.get(PC) << 8; PC = (PC + 1) & mask; lastLen = 3; }
+        }
+        lastArg = arg;
+
         switch (op) {
             case LOADI:
-                ACC = to8(arg); setFlags(ACC); log = "LOADI " + arg;
+                ACC = to8(arg); setFlags(ACC);
                 break;
             case LOADM:
-                ACC = to8(mem[clampAddr(arg)]); setFlags(ACC); log = "LOADM [" + arg + "] -> " + ACC;
+                lastRead = clampAddr(arg); ACC = to8(mem.get(lastRead)); setFlags(ACC);
                 break;
             case STORE:
-                mem[clampAddr(arg)] = ACC; log = "STORE [" + arg + "] <- " + ACC;
+                lastWrite = clampAddr(arg);
+                if (loopDetector != null) loopDetector.onStore(lastWrite, mem.get(lastWrite), ACC);
+                mem.set(lastWrite, ACC);
+                if (dOp != null) invalidateAt(lastWrite);
                 break;
             case ADDI:
-                ACC = to8(ACC + arg); setFlags(ACC); log = "ADDI " + arg + " -> " + ACC;
+                ACC = to8(ACC + arg); setFlags(ACC);
                 break;
             case SUBI:
-                ACC = to8(ACC - arg); setFlags(ACC); log = "SUBI " + arg + " -> " + ACC;
+                ACC = to8(ACC - arg); setFlags(ACC);
                 break;
             case ADDM:
-                ACC = to8(ACC + mem[clampAddr(arg)]); setFlags(ACC); log = "ADDM [" + arg + "] -> ACC=" + ACC;
+                lastRead = clampAddr(arg); ACC = to8(ACC + mem.get(lastRead)); setFlags(ACC);
                 break;
             case SUBM:
-                ACC = to8(ACC - mem[clampAddr(arg)]); setFlags(ACC); log = "SUBM [" + arg + "] -> ACC=" + ACC;
+                lastRead = clampAddr(arg); ACC = to8(ACC - mem.get(lastRead)); setFlags(ACC);
                 break;
             case JMP:
-                PC = clampAddr(arg); log = "JMP " + arg;
+                PC = clampAddr(arg);
                 break;
             case JZ:
-                if (Z == 1) { PC = clampAddr(arg); log = "JZ -> salto para " + arg; }
-                else { log = "JZ ignorado"; }
+                if (Z == 1) PC = clampAddr(arg);
                 break;
             case JN:
-                if (N == 1) { PC = clampAddr(arg); log = "JN -> salto (negativo) para " + arg; }
-                else { log = "JN ignorado"; }
+                if (N == 1) PC = clampAddr(arg);
                 break;
             case IN:
-                String s = JOptionPane.showInputDialog(null, "Entrada (IN): Digite um valor:", "CPU Input", JOptionPane.QUESTION_MESSAGE);
-                int v = 0;
-                try { if (s != null) v = Integer.parseInt(s.trim()); } catch (Exception ignored) {}
-                ACC = to8(v); setFlags(ACC);
-                log = "IN -> Leu " + v;
+                lastIn = io.read();
+                ACC = to8(lastIn); setFlags(ACC);
                 break;
             case OUT:
-                log = "OUT -> ACC = " + ACC;
+                io.write(ACC);
                 break;
             case HALT:
-                halted = true; log = "HALT";
-                break;
+                halted = true; haltReason = HALTED;
+                return HALTED;
             default:
-                halted = true; log = "INV 0x" + Integer.toHexString(op);
+                halted = true; haltReason = INVALID;
+                return INVALID;
+        }
+        return RUNNING;
+    }
+
+    // Ganchos executados depois de cada instrução no caminho instrumentado
+    private int afterStep(int st) {
+        if (trace != null) trace.add(lastPC, IR, IR == IN ? lastIn : lastArg, ACC, Z, N, lastRead, lastWrite);
+        if (counters != null) counters.record(IR, lastLen, Z, N, lastRead, lastWrite);
+        if (profiler != null) profiler.record(lastPC);
+        if (loopDetector != null && st == RUNNING && loopDetector.afterStep(this, lastPC, IR == IN)) return LOOP;
+        if (breakpoints != null && st == RUNNING && breakpoints.check(this, PC, lastRead, lastWrite)) return BREAK;
+        return st;
+    }
+
+    /** true quando algum recurso de depuração exige o caminho instrumentado (breakpoints de execução não exigem). */
+    public boolean isInstrumented() {
+        return trace != null || counters != null || loopDetector != null || profiler != null
+                || (breakpoints != null && breakpoints.hasWatchpoints());
+    }
+
+    // Antes da primeira instrução de run(): breakpoint de execução em PC, a menos que a CPU esteja continuando dele
+    private boolean breakBefore() {
+        int skip = resumePC;
+        resumePC = -1;
+        if (breakpoints == null || PC == skip || !breakpoints.checkExec(this, PC)) return false;
+        resumePC = PC;
+        return true;
+    }
+
+    // Profiler e PerfCounters contam por endereço: as tabelas precisam cobrir a memória toda
+    private void checkHooks() {
+        if ((profiler != null && profiler.hits.length < mem.size())
+                || (counters != null && counters.reads.length < mem.size())) {
+            throw new IllegalStateException("Profiler ou PerfCounters menor que a memória de " + mem.size() + " bytes");
+        }
+    }
+
+    private int runInstrumented(long maxSteps) {
+        checkHooks();
+        int st = RUNNING;
+        long i = 0;
+        while (i < maxSteps && st == RUNNING) {
+            if (stopAtInput && mem.get(PC) == IN) { st = INPUT; break; }
+            st = afterStep(exec());
+            i++;
+        }
+        lastRunSteps = i;
+        if (st == BREAK) resumePC = PC;
+        return st == RUNNING ? BUDGET : st;
+    }
+
+    /**
+     * Executa uma instrução como step(), mas sem montar a string de log.
+     * @return RUNNING, HALTED, INVALID, LOOP ou BREAK
+     */
+    public int stepQuiet() {
+        resumePC = PC;   // o passo executa a instrução atual mesmo com breakpoint nela
+        int st = run(1);
+        return st == BUDGET ? RUNNING : st;
+    }
+
+    /**
+     * Caminho rápido: executa até maxSteps instruções sem alocar nada.
+     * Os registradores ficam em variáveis locais e são gravados de volta no fim.
+     * Breakpoints de execução são testados antes de cada instrução, aqui mesmo;
+     * com rastro, watchpoints (ou outro recurso de depuração) ligados, usa o caminho instrumentado.
+     * @return HALTED, INVALID, BUDGET (orçamento esgotado sem parar), LOOP (laço infinito comprovado),
+     *         BREAK (breakpoint) ou INPUT (stopAtInput)
+     */
+    public int run(long maxSteps) {
+        lastRunSteps = 0;
+        if (halted) return haltReason;
+        if (breakBefore()) return BREAK;
+        if (isInstrumented()) return runInstrumented(maxSteps);
+        if (dOp != null) return runDecoded(maxSteps);
+        if (wide) return runWide(maxSteps);
+
+        final PagedMemory m = mem;
+        final long[] eb = breakpoints != null ? breakpoints.execBits() : null;
+        int pc = PC, ir = IR, acc = ACC, z = Z, n = N;
+        int st = BUDGET;
+        long i = 0;
+
+        loop:
+        while (i < maxSteps) {
+            int op = m.get(pc);
+            pc = (pc + 1) & 0xFF;
+            i++;
+            switch (op) {
+                case LOADI:
+                    acc = m.get(pc) & 0xFF; pc = (pc + 1) & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case LOADM:
+                    acc = m.get(clampAddr(m.get(pc))) & 0xFF; pc = (pc + 1) & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case STORE:
+                    m.set(clampAddr(m.get(pc)), acc); pc = (pc + 1) & 0xFF;
+                    break;
+                case ADDI:
+                    acc = (acc + m.get(pc)) & 0xFF; pc = (pc + 1) & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case SUBI:
+                    acc = (acc - m.get(pc)) & 0xFF; pc = (pc + 1) & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case ADDM:
+                    acc = (acc + m.get(clampAddr(m.get(pc)))) & 0xFF; pc = (pc + 1) & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case SUBM:
+                    acc = (acc - m.get(clampAddr(m.get(pc)))) & 0xFF; pc = (pc + 1) & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case JMP:
+                    pc = clampAddr(m.get(pc));
+                    break;
+                case JZ:
+                    pc = z == 1 ? clampAddr(m.get(pc)) : (pc + 1) & 0xFF;
+                    break;
+                case JN:
+                    pc = n == 1 ? clampAddr(m.get(pc)) : (pc + 1) & 0xFF;
+                    break;
+                case IN:
+                    // Volta para o IN sem executá-lo; IR continua o da instrução anterior
+                    if (stopAtInput) { pc = (pc - 1) & 0xFF; i--; st = INPUT; break loop; }
+                    PC = pc; IR = op; ACC = acc; Z = z; N = n;
+                    acc = io.read() & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case OUT:
+                    io.write(acc);
+                    break;
+                case HALT:
+                    st = HALTED;
+                    break;
+                default:
+                    st = INVALID;
+            }
+            ir = op;
+            if (st != BUDGET) break;
+            if (eb != null && (eb[pc >>> 6] & 1L << pc) != 0) {
+                // Próxima instrução marcada: a condição vê os registradores atuais
+                PC = pc; IR = ir; ACC = acc; Z = z; N = n;
+                if (breakpoints.checkExec(this, pc)) { st = BREAK; break; }
+            }
+        }
+
+        PC = pc; IR = ir; ACC = acc; Z = z; N = n;
+        lastRunSteps = i;
+        if (st == HALTED || st == INVALID) { halted = true; haltReason = st; }
+        if (st == BREAK) resumePC = pc;
+        return st;
+    }
+
+    // Mesmo laço de run() para o modo estendido: endereços com 2 bytes e a máscara da memória
+    private int runWide(long maxSteps) {
+        final PagedMemory m = mem;
+        final int k = mask;
+        final long[] eb = breakpoints != null ? breakpoints.execBits() : null;
+        int pc = PC, ir = IR, acc = ACC, z = Z, n = N;
+        int st = BUDGET;
+        long i = 0;
+
+        loop:
+        while (i < maxSteps) {
+            int op = m.get(pc);
+            pc = (pc + 1) & k;
+            i++;
+            switch (op) {
+                case LOADI:
+                    acc = m.get(pc); pc = (pc + 1) & k;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case LOADM:
+                    acc = m.get(wideAddr(m, pc)); pc = (pc + 2) & k;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case STORE:
+                    m.set(wideAddr(m, pc), acc); pc = (pc + 2) & k;
+                    break;
+                case ADDI:
+                    acc = (acc + m.get(pc)) & 0xFF; pc = (pc + 1) & k;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case SUBI:
+                    acc = (acc - m.get(pc)) & 0xFF; pc = (pc + 1) & k;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case ADDM:
+                    acc = (acc + m.get(wideAddr(m, pc))) & 0xFF; pc = (pc + 2) & k;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case SUBM:
+                    acc = (acc - m.get(wideAddr(m, pc))) & 0xFF; pc = (pc + 2) & k;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case JMP:
+                    pc = wideAddr(m, pc);
+                    break;
+                case JZ:
+                    pc = z == 1 ? wideAddr(m, pc) : (pc + 2) & k;
+                    break;
+                case JN:
+                    pc = n == 1 ? wideAddr(m, pc) : (pc + 2) & k;
+                    break;
+                case IN:
+                    if (stopAtInput) { pc = (pc - 1) & k; i--; st = INPUT; break loop; }
+                    PC = pc; IR = op; ACC = acc; Z = z; N = n;
+                    acc = io.read() & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case OUT:
+                    io.write(acc);
+                    break;
+                case HALT:
+                    st = HALTED;
+                    break;
+                default:
+                    st = INVALID;
+            }
+            ir = op;
+            if (st != BUDGET) break;
+            if (eb != null && (eb[pc >>> 6] & 1L << pc) != 0) {
+                PC = pc; IR = ir; ACC = acc; Z = z; N = n;
+                if (breakpoints.checkExec(this, pc)) { st = BREAK; break; }
+            }
+        }
+
+        PC = pc; IR = ir; ACC = acc; Z = z; N = n;
+        lastRunSteps = i;
+        if (st == HALTED || st == INVALID) { halted = true; haltReason = st; }
+        if (st == BREAK) resumePC = pc;
+        return st;
+    }
+
+    // Operando de endereço de 16 bits (little-endian) em pc
+    private int wideAddr(PagedMemory m, int pc) {
+        return clampAddr(m.get(pc) | m.get((pc + 1) & mask) << 8);
+    }
+
+    // Mesmo laço de run(), mas despachando pela memória pré-decodificada
+    private int runDecoded(long maxSteps) {
+        final PagedMemory m = mem;
+        final byte[] d = dOp;
+        final byte[] di = dIr;
+        final int[] da = dArg;
+        final int[] dn = dNext;
+        final long[] eb = breakpoints != null ? breakpoints.execBits() : null;
+        int pc = PC, ir = IR, acc = ACC, z = Z, n = N;
+        int st = BUDGET;
+        long i = 0;
+
+        loop:
+        while (i < maxSteps) {
+            byte h = d[pc];
+            if (h == D_NONE) h = decode(pc);
+            int op = di[pc] & 0xFF;
+            int arg = da[pc];
+            int next = dn[pc];
+            i++;
+            switch (h) {
+                case D_LOADI:
+                    acc = arg & 0xFF; z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case D_LOADM:
+                    acc = m.get(clampAddr(arg)) & 0xFF; z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case D_STORE: {
+                    int a = clampAddr(arg);
+                    m.set(a, acc);
+                    invalidateAt(a);
+                    break;
+                }
+                case D_ADDI:
+                    acc = (acc + arg) & 0xFF; z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case D_SUBI:
+                    acc = (acc - arg) & 0xFF; z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case D_ADDM:
+                    acc = (acc + m.get(clampAddr(arg))) & 0xFF; z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case D_SUBM:
+                    acc = (acc - m.get(clampAddr(arg))) & 0xFF; z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case D_JMP:
+                    next = clampAddr(arg);
+                    break;
+                case D_JZ:
+                    if (z == 1) next = clampAddr(arg);
+                    break;
+                case D_JN:
+                    if (n == 1) next = clampAddr(arg);
+                    break;
+                case D_IN:
+                    if (stopAtInput) { i--; st = INPUT; break loop; }
+                    PC = next; IR = op; ACC = acc; Z = z; N = n;
+                    acc = io.read() & 0xFF;
+                    z = acc == 0 ? 1 : 0; n = acc >>> 7;
+                    break;
+                case D_OUT:
+                    io.write(acc);
+                    break;
+                case D_HALT:
+                    st = HALTED;
+                    break;
+                default:
+                    st = INVALID;
+            }
+            ir = op;
+            pc = next;
+            if (st != BUDGET) break;
+            if (eb != null && (eb[pc >>> 6] & 1L << pc) != 0) {
+                PC = pc; IR = ir; ACC = acc; Z = z; N = n;
+                if (breakpoints.checkExec(this, pc)) { st = BREAK; break; }
+            }
         }
-        // =========================================================
 
-        return String.format("PC=%03d | IR=0x%02X | ACC=%d | Z=%d | N=%d :: %s", currentPC, op, ACC, Z, N, log);
+        PC = pc; IR = ir; ACC = acc; Z = z; N = n;
+        lastRunSteps = i;
+        if (st == HALTED || st == INVALID) { halted = true; haltReason = st; }
+        if (st == BREAK) resumePC = pc;
+        return st;
     }
 }
\ No newline at end of file
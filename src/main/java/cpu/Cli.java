@@ -0,0 +1,197 @@
+package cpu;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Execução sem interface gráfica, para scripts e pipelines:
+ *
+ *   java -jar simulador.jar [opções] programa.asm [entradas...]
+ *
+ * Monta o arquivo (ou carrega uma imagem .img do ProgramImage), executa com as entradas dadas (ou lidas da entrada padrão)
+ * e imprime as saídas de OUT e o estado final. Não usa nenhuma classe do Swing.
+ */
+public class Cli {
+
+    // Códigos de saída do processo
+    public static final int EXIT_HALT    = 0;  // terminou em HALT
+    public static final int EXIT_USAGE   = 1;  // argumentos inválidos
+    public static final int EXIT_ERROR   = 2;  // erro de leitura, montagem ou execução
+    public static final int EXIT_INVALID = 3;  // opcode inválido
+    public static final int EXIT_BUDGET  = 4;  // orçamento de passos esgotado
+    public static final int EXIT_LOOP    = 5;  // laço infinito comprovado (--detect-loops)
+
+    private static final String USAGE =
+            "uso: java -jar simulador.jar [opções] programa.asm|programa.img [entradas...]\n" +
+            "  --json             imprime o resultado em JSON\n" +
+            "  --stdin            lê as entradas da entrada padrão (inteiros separados por espaço)\n" +
+            "  --max-steps N      orçamento de instruções (padrão 10000000)\n" +
+            "  --data N           endereço das variáveis DEC (padrão 200; 32768 com --wide)\n" +
+            "  --wide             modo estendido: endereços de 16 bits e 64 KiB de memória\n" +
+            "  --detect-loops     para ao comprovar um laço infinito\n" +
+            "  --save-image ARQ   grava o programa montado como imagem binária\n" +
+            "Sem argumentos, abre a interface gráfica.";
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /** Executa a linha de comando e devolve o código de saída. */
+    public static int run(String[] args, InputStream stdin, PrintStream out, PrintStream err) {
+        boolean json = false, useStdin = false, detectLoops = false, wide = false;
+        long maxSteps = 10_000_000L;
+        int dataBase = Integer.MIN_VALUE;   // sem --data: depende do modo
+        Path file = null, image = null;
+        int[] inputs = new int[args.length];
+        int inputCount = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (file == null && a.startsWith("--")) {
+                    switch (a) {
+                        case "--json": json = true; break;
+                        case "--stdin": useStdin = true; break;
+                        case "--detect-loops": detectLoops = true; break;
+                        case "--wide": wide = true; break;
+                        case "--max-steps": maxSteps = Long.parseLong(next(args, ++i, a)); break;
+                        case "--data": dataBase = Integer.parseInt(next(args, ++i, a)); break;
+                        case "--save-image": image = Paths.get(next(args, ++i, a)); break;
+                        case "--help":
+                            out.println(USAGE);
+                            return EXIT_HALT;
+                        default:
+                            throw new IllegalArgumentException("Opção desconhecida: " + a);
+                    }
+                } else if (file == null) {
+                    file = Paths.get(a);
+                } else {
+                    inputs[inputCount++] = Integer.parseInt(a);
+                }
+            }
+            if (file == null) throw new IllegalArgumentException("Falta o arquivo do programa.");
+            if (maxSteps < 1) throw new IllegalArgumentException("Orçamento de passos inválido: " + maxSteps);
+            if (useStdin && inputCount > 0) throw new IllegalArgumentException("Use --stdin ou entradas na linha de comando, não os dois.");
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException também cai aqui
+            err.println("Erro: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        if (dataBase == Integer.MIN_VALUE) dataBase = wide ? 32768 : 200;
+
+        CPU cpu;
+        BufferedIO io;
+        try {
+            if (file.toString().endsWith(".img")) {
+                // O modo vem da imagem; --wide só confirma
+                boolean imageWide = ProgramImage.isWide(file);
+                if (wide && !imageWide) throw new IOException("A imagem não foi montada com --wide: " + file);
+                wide = imageWide;
+                if (image != null) Files.copy(file, image, StandardCopyOption.REPLACE_EXISTING);
+                cpu = wide ? CPU.wide() : new CPU();
+                ProgramImage.load(file, cpu);
+            } else {
+                String src = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                Assembler.AsmOut prog = wide ? Assembler.assembleWide(src, dataBase) : Assembler.assembleWithVars(src, dataBase);
+                if (image != null) ProgramImage.write(prog, image, wide ? ProgramImage.FLAG_WIDE : 0);
+                cpu = wide ? CPU.wide() : new CPU();
+                cpu.load(prog);
+            }
+            io = useStdin ? BufferedIO.fromReader(new InputStreamReader(stdin, StandardCharsets.UTF_8))
+                          : BufferedIO.of(Arrays.copyOf(inputs, inputCount));
+        } catch (IOException e) {
+            err.println("Erro de E/S: " + e.getMessage());
+            return EXIT_ERROR;
+        } catch (IllegalArgumentException e) {
+            err.println("Erro de montagem: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+
+        int status;
+        try {
+            cpu.io = io;
+            if (detectLoops) cpu.loopDetector = new LoopDetector(cpu);
+            status = cpu.run(maxSteps);
+        } catch (RuntimeException e) {
+            err.println("Erro de execução: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+
+        if (json) printJson(out, cpu, status, io); else printText(out, cpu, status, io);
+
+        switch (status) {
+            case CPU.HALTED:  return EXIT_HALT;
+            case CPU.INVALID: return EXIT_INVALID;
+            case CPU.LOOP:    return EXIT_LOOP;
+            default:          return EXIT_BUDGET;
+        }
+    }
+
+    private static String next(String[] args, int i, String opt) {
+        if (i >= args.length) throw new IllegalArgumentException("Falta o valor de " + opt);
+        return args[i];
+    }
+
+    static String statusName(int status) {
+        switch (status) {
+            case CPU.HALTED:  return "HALTED";
+            case CPU.INVALID: return "INVALID";
+            case CPU.LOOP:    return "LOOP";
+            case CPU.BUDGET:  return "BUDGET";
+            default:          return "RUNNING";
+        }
+    }
+
+    // Uma saída de OUT por linha e, por fim, o estado
+    private static void printText(PrintStream out, CPU cpu, int status, BufferedIO io) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < io.outputCount(); i++) sb.append(io.output(i)).append('\n');
+        sb.append(String.format("# %s após %d passos | PC=%03d | IR=0x%02X | ACC=%d | Z=%d | N=%d",
+                statusName(status), cpu.lastRunSteps, cpu.PC, cpu.IR, cpu.ACC, cpu.Z, cpu.N));
+        if (status == CPU.LOOP) {
+            LoopDetector ld = cpu.loopDetector;
+            sb.append(String.format(" | laço PC %03d-%03d, período %d", ld.loopMinPC, ld.loopMaxPC, ld.period));
+        }
+        out.println(sb);
+    }
+
+    private static void printJson(PrintStream out, CPU cpu, int status, BufferedIO io) {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("{\"status\":\"").append(statusName(status)).append('"');
+        sb.append(",\"steps\":").append(cpu.lastRunSteps);
+        sb.append(",\"pc\":").append(cpu.PC);
+        sb.append(",\"ir\":").append(cpu.IR);
+        sb.append(",\"acc\":").append(cpu.ACC);
+        sb.append(",\"z\":").append(cpu.Z);
+        sb.append(",\"n\":").append(cpu.N);
+        sb.append(",\"outputs\":[");
+        for (int i = 0; i < io.outputCount(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(io.output(i));
+        }
+        sb.append("],\"mem\":[");
+        for (int a = 0; a < cpu.mem.size(); a++) {
+            if (a > 0) sb.append(',');
+            sb.append(cpu.mem.get(a));
+        }
+        sb.append(']');
+        if (status == CPU.LOOP) {
+            LoopDetector ld = cpu.loopDetector;
+            sb.append(",\"loop\":{\"minPC\":").append(ld.loopMinPC)
+              .append(",\"maxPC\":").append(ld.loopMaxPC)
+              .append(",\"period\":").append(ld.period).append('}');
+        }
+        sb.append('}');
+        out.println(sb);
+    }
+}
@@ -0,0 +1,270 @@
+package cpu;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Condição de breakpoint, ex.: "ACC == 0 && mem[Q] > 10" ou "after 1000 hits".
+ *
+ * O texto é analisado uma única vez e vira uma árvore de lambdas sobre os
+ * campos da CPU; test() só avalia a árvore, sem reler o texto.
+ *
+ * Gramática (como em C: comparações e lógicos valem 0 ou 1; diferente de 0 é verdadeiro):
+ *   cond    := [expr] [("after" | "após") N ["hits" | "vezes"]]
+ *   expr    := and ("||" and)*
+ *   and     := eq ("&&" eq)*
+ *   eq      := rel (("==" | "!=") rel)*
+ *   rel     := sum (("<" | "<=" | ">" | ">=") sum)*
+ *   sum     := unary (("+" | "-") unary)*
+ *   unary   := ("!" | "-") unary | primary
+ *   primary := número | ACC | PC | IR | Z | N | símbolo | mem[expr] | (expr)
+ * Um símbolo (rótulo ou variável) vale o seu endereço; mem[...] lê a memória.
+ * Registradores têm prioridade sobre símbolos de mesmo nome.
+ */
+public final class Condition {
+    public final String source;
+    private final ToIntFunction<CPU> expr;   // null = sempre verdadeira
+    private final long after;
+
+    /** Vezes em que o breakpoint foi atingido com a expressão verdadeira. */
+    public long hits;
+
+    private Condition(String source, ToIntFunction<CPU> expr, long after) {
+        this.source = source;
+        this.expr = expr;
+        this.after = after;
+    }
+
+    /**
+     * Analisa e compila a condição.
+     * @param symbols nomes em maiúsculas -> endereço (Assembler.AsmOut.symbols)
+     * @throws IllegalArgumentException se o texto for inválido ou usar símbolo desconhecido
+     */
+    public static Condition compile(String source, Map<String, Integer> symbols) {
+        Parser p = new Parser(source, symbols);
+        ToIntFunction<CPU> e = null;
+        long after = 1;
+        if (!p.atKeyword("AFTER", "APÓS", "APOS")) e = p.expr();
+        if (p.atKeyword("AFTER", "APÓS", "APOS")) {
+            p.ident();
+            after = p.count();
+            if (p.atKeyword("HITS", "VEZES")) p.ident();
+        }
+        if (!p.atEnd()) throw p.error("sobrou '" + p.rest() + "'");
+        return new Condition(source.trim(), e, after);
+    }
+
+    /** Chamado quando o breakpoint é atingido: true se deve parar. */
+    public boolean test(CPU cpu) {
+        if (expr != null && expr.applyAsInt(cpu) == 0) return false;
+        return ++hits >= after;
+    }
+
+    @Override
+    public String toString() { return source; }
+
+    // Analisador descendente recursivo; cada regra devolve a lambda já montada
+    private static final class Parser {
+        private final String s;
+        private final Map<String, Integer> symbols;
+        private int pos;
+
+        Parser(String s, Map<String, Integer> symbols) {
+            this.s = s;
+            this.symbols = symbols;
+        }
+
+        ToIntFunction<CPU> expr() {
+            ToIntFunction<CPU> l = and();
+            while (accept("||")) {
+                ToIntFunction<CPU> a = l, b = and();
+                l = c -> a.applyAsInt(c) != 0 || b.applyAsInt(c) != 0 ? 1 : 0;
+            }
+            return l;
+        }
+
+        private ToIntFunction<CPU> and() {
+            ToIntFunction<CPU> l = eq();
+            while (accept("&&")) {
+                ToIntFunction<CPU> a = l, b = eq();
+                l = c -> a.applyAsInt(c) != 0 && b.applyAsInt(c) != 0 ? 1 : 0;
+            }
+            return l;
+        }
+
+        private ToIntFunction<CPU> eq() {
+            ToIntFunction<CPU> l = rel();
+            while (true) {
+                if (accept("==")) {
+                    ToIntFunction<CPU> a = l, b = rel();
+                    l = c -> a.applyAsInt(c) == b.applyAsInt(c) ? 1 : 0;
+                } else if (accept("!=")) {
+                    ToIntFunction<CPU> a = l, b = rel();
+                    l = c -> a.applyAsInt(c) != b.applyAsInt(c) ? 1 : 0;
+                } else {
+                    return l;
+                }
+            }
+        }
+
+        private ToIntFunction<CPU> rel() {
+            ToIntFunction<CPU> l = sum();
+            while (true) {
+                ToIntFunction<CPU> a = l;
+                if (accept("<=")) {
+                    ToIntFunction<CPU> b = sum();
+                    l = c -> a.applyAsInt(c) <= b.applyAsInt(c) ? 1 : 0;
+                } else if (accept(">=")) {
+                    ToIntFunction<CPU> b = sum();
+                    l = c -> a.applyAsInt(c) >= b.applyAsInt(c) ? 1 : 0;
+                } else if (accept("<")) {
+                    ToIntFunction<CPU> b = sum();
+                    l = c -> a.applyAsInt(c) < b.applyAsInt(c) ? 1 : 0;
+                } else if (accept(">")) {
+                    ToIntFunction<CPU> b = sum();
+                    l = c -> a.applyAsInt(c) > b.applyAsInt(c) ? 1 : 0;
+                } else {
+                    return l;
+                }
+            }
+        }
+
+        private ToIntFunction<CPU> sum() {
+            ToIntFunction<CPU> l = unary();
+            while (true) {
+                ToIntFunction<CPU> a = l;
+                if (accept("+")) {
+                    ToIntFunction<CPU> b = unary();
+                    l = c -> a.applyAsInt(c) + b.applyAsInt(c);
+                } else if (accept("-")) {
+                    ToIntFunction<CPU> b = unary();
+                    l = c -> a.applyAsInt(c) - b.applyAsInt(c);
+                } else {
+                    return l;
+                }
+            }
+        }
+
+        private ToIntFunction<CPU> unary() {
+            if (peek() == '!' && !s.startsWith("!=", pos)) {
+                pos++;
+                ToIntFunction<CPU> a = unary();
+                return c -> a.applyAsInt(c) == 0 ? 1 : 0;
+            }
+            if (accept("-")) {
+                ToIntFunction<CPU> a = unary();
+                return c -> -a.applyAsInt(c);
+            }
+            return primary();
+        }
+
+        private ToIntFunction<CPU> primary() {
+            char ch = peek();
+            if (accept("(")) {
+                ToIntFunction<CPU> e = expr();
+                expect(")");
+                return e;
+            }
+            if (ch >= '0' && ch <= '9') {
+                int v = number();
+                return c -> v;
+            }
+            if (!isIdentStart(ch)) throw error(atEnd() ? "expressão incompleta" : "inesperado '" + ch + "'");
+
+            int at = pos;
+            String name = ident();
+            switch (name) {
+                case "ACC": return c -> c.ACC;
+                case "PC":  return c -> c.PC;
+                case "IR":  return c -> c.IR;
+                case "Z":   return c -> c.Z;
+                case "N":   return c -> c.N;
+                case "MEM": {
+                    expect("[");
+                    ToIntFunction<CPU> addr = expr();
+                    expect("]");
+                    return c -> c.mem.get(addr.applyAsInt(c) & (c.mem.size() - 1));
+                }
+                default:
+                    Integer a = symbols.get(name);
+                    if (a == null) throw error(at, "símbolo não encontrado: " + name);
+                    int v = a;
+                    return c -> v;
+            }
+        }
+
+        long count() {
+            if (!(peek() >= '0' && peek() <= '9')) throw error("esperado o número de vezes");
+            int v = number();
+            if (v < 1) throw error("número de vezes deve ser positivo");
+            return v;
+        }
+
+        private int number() {
+            skipSpaces();
+            int start = pos;
+            int radix = 10;
+            if (s.startsWith("0x", pos) || s.startsWith("0X", pos)) {
+                radix = 16;
+                pos += 2;
+                start = pos;
+            }
+            while (pos < s.length() && Character.digit(s.charAt(pos), radix) >= 0) pos++;
+            if (pos == start) throw error("número inválido");
+            try {
+                return Integer.parseInt(s.substring(start, pos), radix);
+            } catch (NumberFormatException e) {
+                throw error("número grande demais: " + s.substring(start, pos));
+            }
+        }
+
+        String ident() {
+            skipSpaces();
+            int start = pos;
+            while (pos < s.length() && (isIdentStart(s.charAt(pos)) || Character.isDigit(s.charAt(pos)))) pos++;
+            return s.substring(start, pos).toUpperCase(Locale.ROOT);
+        }
+
+        private static boolean isIdentStart(char ch) { return Character.isLetter(ch) || ch == '_'; }
+
+        boolean atKeyword(String... words) {
+            int save = pos;
+            char ch = peek();
+            String w = isIdentStart(ch) ? ident() : "";
+            pos = save;
+            for (String k : words) if (k.equals(w)) return true;
+            return false;
+        }
+
+        private boolean accept(String op) {
+            skipSpaces();
+            if (!s.startsWith(op, pos)) return false;
+            pos += op.length();
+            return true;
+        }
+
+        private void expect(String op) {
+            if (!accept(op)) throw error("esperado '" + op + "'");
+        }
+
+        private char peek() {
+            skipSpaces();
+            return pos < s.length() ? s.charAt(pos) : '\0';
+        }
+
+        private void skipSpaces() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        boolean atEnd() { return peek() == '\0' && pos >= s.length(); }
+
+        String rest() { return s.substring(pos); }
+
+        IllegalArgumentException error(String what) { return error(pos, what); }
+
+        private IllegalArgumentException error(int at, String what) {
+            return new IllegalArgumentException("Condição inválida (coluna " + (at + 1) + "): " + what);
+        }
+    }
+}
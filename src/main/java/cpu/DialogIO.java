@@ -0,0 +1,38 @@
+package cpu;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.lang.reflect.InvocationTargetException;
+
+/** Entrada por diálogo modal (comportamento original do simulador); OUT é ignorado. */
+public class DialogIO implements IODevice {
+    private final Component parent;
+
+    public DialogIO(Component parent) { this.parent = parent; }
+
+    @Override
+    public int read() {
+        if (SwingUtilities.isEventDispatchThread()) return ask();
+        // O diálogo precisa abrir na thread da interface (o turbo não chega aqui: para antes do IN)
+        final int[] v = new int[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> v[0] = ask());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return v[0];
+    }
+
+    private int ask() {
+        String s = JOptionPane.showInputDialog(parent, "Entrada (IN): Digite um valor:", "CPU Input", JOptionPane.QUESTION_MESSAGE);
+        int v = 0;
+        try { if (s != null) v = Integer.parseInt(s.trim()); } catch (Exception ignored) {}
+        return v;
+    }
+
+    @Override
+    public void write(int value) { }
+}
@@ -5,9 +5,11 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.*;
 import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.Arrays;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class EditorTab {
 
@@ -33,18 +35,43 @@ public class EditorTab {
     private static final Color C_DARK_NUMBER = new Color(140, 220, 140);
     private static final Color C_DARK_COMMENT = new Color(255, 180, 100); // Light Orange
 
-    // RegEx
+    // Tokens do realce
     private static final String[] MNEMONICS = {
             "LOADI", "LOADM", "LOAD", "STORE", "ADDI", "SUBI", "ADDM", "ADD", "SUBM", "SUB",
             "JMP", "JZ", "JN", "IN", "INPUT", "OUT", "OUTPUT", "HALT"
     };
-    private static final Pattern MNEMONIC_PATTERN = Pattern.compile("\\b(" + String.join("|", MNEMONICS) + ")\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern LABEL_VAR_PATTERN = Pattern.compile("\\b([A-Za-z_][A-Za-z0-9_]*)(:|\\s*,\\s*DEC)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\b(-?\\d+)\\b");
-    private static final Pattern COMMENT_PATTERN = Pattern.compile("[;/].*");
+    private static final int T_MNEMONIC = 1, T_LABEL_VAR = 2, T_NUMBER = 3, T_COMMENT = 4;
 
     private static JTextPane editorPane;
 
+    // --- Montagem em segundo plano ---
+    private static final int ASSEMBLE_DELAY_MS = 300;
+    private static final ExecutorService assemblerThread = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "montador");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Assembler.Incremental incremental = new Assembler.Incremental(); // só na thread do montador
+    private static Timer assembleTimer;
+    private static int docVersion;                 // muda a cada edição (EDT)
+    private static String readyText;               // texto que gerou readyOut
+    private static Assembler.AsmOut readyOut;
+    private static int errorLine = -1;             // linha do erro atual (-1 = nenhum ou sem linha)
+    private static String errorMsg;
+    private static Object errorTag;
+    private static JLabel statusLabel;
+    private static Gutter gutter;
+
+    // --- Realce incremental ---
+    private static final int HIGHLIGHT_DELAY_MS = 40;
+    private static final ExecutorService highlighterThread = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "realce");
+        t.setDaemon(true);
+        return t;
+    });
+    private static Timer highlightTimer;
+    private static Position dirtyStart, dirtyEnd;  // região alterada desde o último realce (acompanha as edições)
+
 
     public static void updateStyles(boolean isDark) {
         if (isDark) {
@@ -60,20 +87,22 @@ public class EditorTab {
             STYLE_NUMBER = styleContext.addAttribute(SimpleAttributeSet.EMPTY, StyleConstants.Foreground, C_LIGHT_NUMBER);
             STYLE_COMMENT = styleContext.addAttribute(SimpleAttributeSet.EMPTY, StyleConstants.Foreground, C_LIGHT_COMMENT);
         }
-        applyHighlighting(editorPane);
+        if (editorPane != null) markDirty(0, editorPane.getDocument().getLength());
     }
 
     public static void setText(String text) {
-        if (editorPane != null) {
-            editorPane.setText(text);
-            applyHighlighting(editorPane);
-        }
+        if (editorPane != null) editorPane.setText(text);  // o listener marca tudo para realce
     }
 
     public static String getText() {
         return editorPane != null ? editorPane.getText() : "";
     }
 
+    /** Programa já montado em segundo plano para exatamente este texto, ou null. */
+    public static Assembler.AsmOut assembled(String text) {
+        return readyOut != null && text.equals(readyText) ? readyOut : null;
+    }
+
     public static JComponent build(Consumer<String> onRunProgram) {
         updateStyles(false);
         JPanel panel = new JPanel(new BorderLayout(8, 8));
@@ -105,47 +134,340 @@ public class EditorTab {
         );
         // =========================================================
 
+        assembleTimer = new Timer(ASSEMBLE_DELAY_MS, e -> assembleInBackground());
+        assembleTimer.setRepeats(false);
+
+        highlightTimer = new Timer(HIGHLIGHT_DELAY_MS, e -> highlightDirty());
+        highlightTimer.setRepeats(false);
+
         editorPane.getDocument().addDocumentListener(new DocumentListener() {
-            @Override public void insertUpdate(DocumentEvent e) { SwingUtilities.invokeLater(() -> applyHighlighting(editorPane)); }
-            @Override public void removeUpdate(DocumentEvent e) { SwingUtilities.invokeLater(() -> applyHighlighting(editorPane)); }
-            @Override public void changedUpdate(DocumentEvent e) { }
+            @Override public void insertUpdate(DocumentEvent e) { markDirty(e.getOffset(), e.getOffset() + e.getLength()); textChanged(); }
+            @Override public void removeUpdate(DocumentEvent e) { markDirty(e.getOffset(), e.getOffset()); textChanged(); }
+            @Override public void changedUpdate(DocumentEvent e) { } // mudanças de atributo (o próprio realce)
         });
 
-        SwingUtilities.invokeLater(() -> applyHighlighting(editorPane));
+        markDirty(0, editorPane.getDocument().getLength());
+        assembleTimer.start();
 
         JButton btRunUser = new JButton("Executar no simulador");
         btRunUser.setBackground(new Color(205, 240, 205));
         btRunUser.addActionListener(e -> onRunProgram.accept(editorPane.getText()));
 
-        panel.add(new JScrollPane(editorPane), BorderLayout.CENTER);
-        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        bottom.add(btRunUser);
+        JScrollPane scroll = new JScrollPane(editorPane);
+        gutter = new Gutter(editorPane);
+        scroll.setRowHeaderView(gutter);
+        panel.add(scroll, BorderLayout.CENTER);
+
+        statusLabel = new JLabel(" ");
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(statusLabel, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(btRunUser);
+        bottom.add(buttons, BorderLayout.EAST);
         panel.add(bottom, BorderLayout.SOUTH);
 
         return panel;
     }
 
+    // Cada edição adia a montagem (debounce); o resultado anterior deixa de valer
+    private static void textChanged() {
+        docVersion++;
+        readyOut = null;
+        readyText = null;
+        gutter.textChanged();
+        assembleTimer.restart();
+    }
+
+    // Copia o texto no EDT e monta na thread do montador; só as linhas alteradas são relidas
+    private static void assembleInBackground() {
+        final String text = editorPane.getText();
+        final int version = docVersion;
+        statusLabel.setText(" Montando...");
+        assemblerThread.execute(() -> {
+            Assembler.AsmOut out = null;
+            RuntimeException error = null;
+            try {
+                out = incremental.assemble(text, 200);
+            } catch (RuntimeException ex) {
+                error = ex;
+            }
+            final Assembler.AsmOut result = out;
+            final RuntimeException failure = error;
+            SwingUtilities.invokeLater(() -> {
+                if (version == docVersion) publish(text, result, failure);
+            });
+        });
+    }
+
+    private static void publish(String text, Assembler.AsmOut out, RuntimeException error) {
+        readyText = out != null ? text : null;
+        readyOut = out;
+        errorLine = error instanceof Assembler.AsmException ? ((Assembler.AsmException) error).line : -1;
+        errorMsg = error != null ? error.getMessage() : null;
+
+        if (errorTag != null) {
+            editorPane.getHighlighter().removeHighlight(errorTag);
+            errorTag = null;
+        }
+        if (error == null) {
+            statusLabel.setText(" ✅ Montado: " + out.code.length + " bytes de código, " + out.dataInits.size() + " variáveis.");
+        } else if (errorLine >= 0) {
+            statusLabel.setText(" ❌ Linha " + (errorLine + 1) + ": " + errorMsg);
+            Element line = editorPane.getDocument().getDefaultRootElement().getElement(errorLine);
+            if (line != null) {
+                try {
+                    errorTag = editorPane.getHighlighter().addHighlight(line.getStartOffset(),
+                            Math.max(line.getStartOffset(), line.getEndOffset() - 1), SQUIGGLE);
+                } catch (BadLocationException ignored) {}
+            }
+        } else {
+            statusLabel.setText(" ❌ " + errorMsg);
+        }
+        gutter.repaint();
+    }
+
+    // Sublinhado ondulado vermelho sob a linha com erro
+    private static final Highlighter.HighlightPainter SQUIGGLE = (g, p0, p1, bounds, c) -> {
+        try {
+            Rectangle a = c.modelToView(p0);
+            Rectangle b = c.modelToView(p1);
+            if (a == null || b == null) return;
+            int y = a.y + a.height - 2;
+            g.setColor(Color.RED);
+            for (int x = a.x; x < b.x; x += 4) {
+                g.drawLine(x, y, x + 2, y + 2);
+                g.drawLine(x + 2, y + 2, x + 4, y);
+            }
+        } catch (BadLocationException ignored) {}
+    };
+
+    /** Números de linha com a marca do erro de montagem (dica com a mensagem). */
+    private static final class Gutter extends JComponent {
+        private static final long serialVersionUID = 1L;
+        private final JTextPane pane;
+        private int digits;
+
+        Gutter(JTextPane pane) {
+            this.pane = pane;
+            setFont(pane.getFont().deriveFont(12f));
+            ToolTipManager.sharedInstance().registerComponent(this);
+            textChanged();
+        }
+
+        // Só muda a largura quando o número de dígitos muda
+        void textChanged() {
+            int lines = pane.getDocument().getDefaultRootElement().getElementCount();
+            int d = Math.max(3, String.valueOf(lines).length());
+            if (d != digits) {
+                digits = d;
+                revalidate();
+            }
+            repaint();
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            FontMetrics fm = getFontMetrics(getFont());
+            return new Dimension(fm.charWidth('0') * digits + 22, pane.getHeight());
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Rectangle clip = g.getClipBounds();
+            g.setColor(pane.getBackground().darker());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            Element root = pane.getDocument().getDefaultRootElement();
+            FontMetrics fm = g.getFontMetrics(getFont());
+            g.setFont(getFont());
+            // Só as linhas visíveis
+            int first = root.getElementIndex(pane.viewToModel(new Point(0, clip.y)));
+            int last = root.getElementIndex(pane.viewToModel(new Point(0, clip.y + clip.height)));
+            for (int i = first; i <= last; i++) {
+                Rectangle r;
+                try {
+                    r = pane.modelToView(root.getElement(i).getStartOffset());
+                } catch (BadLocationException e) { break; }
+                if (r == null) break;
+                String num = String.valueOf(i + 1);
+                int baseline = r.y + fm.getAscent();
+                if (i == errorLine) {
+                    g.setColor(Color.RED);
+                    g.fillOval(4, r.y + (r.height - 8) / 2, 8, 8);
+                }
+                g.setColor(pane.getForeground());
+                g.drawString(num, getWidth() - 6 - fm.stringWidth(num), baseline);
+            }
+        }
+
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            if (errorLine < 0) return null;
+            int line = pane.getDocument().getDefaultRootElement().getElementIndex(pane.viewToModel(new Point(0, e.getY())));
+            return line == errorLine ? errorMsg : null;
+        }
+    }
+
+    // Junta a região [from, to] à área pendente; rajadas de edição viram um só realce
+    private static void markDirty(int from, int to) {
+        if (highlightTimer == null) return;
+        Document doc = editorPane.getDocument();
+        try {
+            if (dirtyStart == null || from < dirtyStart.getOffset()) dirtyStart = doc.createPosition(from);
+            if (dirtyEnd == null || to > dirtyEnd.getOffset()) dirtyEnd = doc.createPosition(to);
+        } catch (BadLocationException ignored) {}
+        highlightTimer.restart();
+    }
+
+    // Copia só as linhas alteradas (EDT), separa os tokens na thread de realce e aplica os estilos de volta no EDT
+    private static void highlightDirty() {
+        if (dirtyStart == null) return;
+        StyledDocument doc = editorPane.getStyledDocument();
+        Element root = doc.getDefaultRootElement();
+        int start = root.getElement(root.getElementIndex(dirtyStart.getOffset())).getStartOffset();
+        int end = Math.min(root.getElement(root.getElementIndex(dirtyEnd.getOffset())).getEndOffset(), doc.getLength());
+        dirtyStart = dirtyEnd = null;
+        final String chunk;
+        final Position from, to;
+        try {
+            chunk = doc.getText(start, end - start);
+            from = doc.createPosition(start);
+            to = doc.createPosition(end);
+        } catch (BadLocationException e) { return; }
+        final int version = docVersion;
+        final int offset = start;
+
+        highlighterThread.execute(() -> {
+            final int[] spans = tokenize(chunk);
+            SwingUtilities.invokeLater(() -> {
+                if (version != docVersion) {
+                    // O texto mudou nesse meio tempo: refaz esta região junto com a nova
+                    markDirty(from.getOffset(), to.getOffset());
+                    return;
+                }
+                applySpans(doc, offset, chunk.length(), spans);
+            });
+        });
+    }
+
+    private static void applySpans(StyledDocument doc, int offset, int length, int[] spans) {
+        doc.setCharacterAttributes(offset, length, STYLE_DEFAULT, true);
+        for (int i = 1; i + 2 <= spans[0] * 3; i += 3) {
+            doc.setCharacterAttributes(offset + spans[i], spans[i + 1], styleOf(spans[i + 2]), true);
+        }
+    }
+
+    private static AttributeSet styleOf(int token) {
+        switch (token) {
+            case T_MNEMONIC:  return STYLE_MNEMONIC;
+            case T_LABEL_VAR: return STYLE_LABEL_VAR;
+            case T_NUMBER:    return STYLE_NUMBER;
+            default:          return STYLE_COMMENT;
+        }
+    }
+
+    /** Realce completo e síncrono (usado na visão de código do simulador, que não é editada). */
     public static void applyHighlighting(JTextPane pane) {
         if (pane == null) return;
-        int caretPos = pane.getCaretPosition();
         StyledDocument doc = pane.getStyledDocument();
         String text;
         try {
             text = doc.getText(0, doc.getLength());
         } catch (BadLocationException e) { return; }
+        applySpans(doc, 0, text.length(), tokenize(text));
+    }
+
+    /**
+     * Separa os tokens de um trecho de linhas inteiras.
+     * @return spans[0] = quantidade; depois triplas (início, tamanho, token)
+     */
+    static int[] tokenize(String text) {
+        int[] spans = new int[1 + 3 * 16];
+        int n = 0;
+        int len = text.length();
+        int ls = 0;
+        while (ls < len) {
+            int le = text.indexOf('\n', ls);
+            if (le < 0) le = len;
 
-        doc.setCharacterAttributes(0, text.length(), STYLE_DEFAULT, true);
-        findAndApply(doc, text, MNEMONIC_PATTERN, STYLE_MNEMONIC);
-        findAndApply(doc, text, LABEL_VAR_PATTERN, STYLE_LABEL_VAR);
-        findAndApply(doc, text, NUMBER_PATTERN, STYLE_NUMBER);
-        findAndApply(doc, text, COMMENT_PATTERN, STYLE_COMMENT);
-        pane.setCaretPosition(caretPos);
+            // Comentário: de ';' ou '/' até o fim da linha
+            int c = ls;
+            while (c < le && text.charAt(c) != ';' && text.charAt(c) != '/') c++;
+            int p = ls;
+            while (p < c) {
+                char ch = text.charAt(p);
+                boolean neg = ch == '-' && p + 1 < c && isDigit(text.charAt(p + 1)) && (p == ls || !isWord(text.charAt(p - 1)));
+                if (!isWord(ch) && !neg) {
+                    p++;
+                    continue;
+                }
+                int w = neg ? p + 1 : p;
+                int we = w;
+                while (we < c && isWord(text.charAt(we))) we++;
+                int token = 0, tokenEnd = we;
+                if (allDigits(text, w, we)) {
+                    token = T_NUMBER;
+                } else if (!neg && !isDigit(ch)) {
+                    int after = labelOrVarEnd(text, we, c);
+                    if (after > 0) {
+                        token = T_LABEL_VAR;
+                        tokenEnd = after;
+                    } else if (isMnemonic(text, w, we)) {
+                        token = T_MNEMONIC;
+                    }
+                }
+                if (token != 0) {
+                    if (1 + 3 * (n + 1) > spans.length) spans = Arrays.copyOf(spans, spans.length * 2);
+                    spans[1 + 3 * n] = p;
+                    spans[2 + 3 * n] = tokenEnd - p;
+                    spans[3 + 3 * n] = token;
+                    n++;
+                }
+                p = tokenEnd;
+            }
+            if (c < le) {
+                if (1 + 3 * (n + 1) > spans.length) spans = Arrays.copyOf(spans, spans.length * 2);
+                spans[1 + 3 * n] = c;
+                spans[2 + 3 * n] = le - c;
+                spans[3 + 3 * n] = T_COMMENT;
+                n++;
+            }
+            ls = le + 1;
+        }
+        spans[0] = n;
+        return spans;
     }
 
-    private static void findAndApply(StyledDocument doc, String text, Pattern pattern, AttributeSet style) {
-        Matcher matcher = pattern.matcher(text);
-        while (matcher.find()) {
-            doc.setCharacterAttributes(matcher.start(), matcher.end() - matcher.start(), style, true);
+    // Depois de um nome: ':' (rótulo) ou ", DEC" / " DEC" (variável). Devolve o fim do realce ou -1
+    private static int labelOrVarEnd(String text, int p, int end) {
+        if (p < end && text.charAt(p) == ':') return p + 1;
+        int q = p;
+        while (q < end && Character.isWhitespace(text.charAt(q))) q++;
+        if (q < end && text.charAt(q) == ',') {
+            q++;
+            while (q < end && Character.isWhitespace(text.charAt(q))) q++;
+        } else if (q == p) {
+            return -1;
         }
+        if (q + 3 <= end && text.regionMatches(true, q, "DEC", 0, 3) && (q + 3 == end || !isWord(text.charAt(q + 3)))) return q + 3;
+        return -1;
+    }
+
+    private static boolean isMnemonic(String text, int from, int to) {
+        int n = to - from;
+        for (String m : MNEMONICS) {
+            if (m.length() == n && text.regionMatches(true, from, m, 0, n)) return true;
+        }
+        return false;
+    }
+
+    private static boolean allDigits(String text, int from, int to) {
+        for (int i = from; i < to; i++) if (!isDigit(text.charAt(i))) return false;
+        return to > from;
+    }
+
+    private static boolean isDigit(char c) { return c >= '0' && c <= '9'; }
+
+    private static boolean isWord(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || isDigit(c) || c == '_';
     }
-}
\ No newline at end of file
+}
@@ -57,4 +57,16 @@ public class FileManager {
             // =========================================================
         }
     }
-}
\ No newline at end of file
+
+    /** Escolhe onde gravar o log de execução (.txt); null se cancelado */
+    public static File chooseLogFile(JFrame parent) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Log de execução (*.txt)", "txt"));
+        if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) return null;
+        File file = chooser.getSelectedFile();
+        if (!file.getName().toLowerCase().endsWith(".txt")) {
+            file = new File(file.getParentFile(), file.getName() + ".txt");
+        }
+        return file;
+    }
+}
@@ -0,0 +1,148 @@
+package cpu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Roda cada programa montado contra cada vetor de entrada em paralelo
+ * (ForkJoinPool, com roubo de trabalho) e entrega os resultados um a um,
+ * conforme terminam, sem guardar nada em memória.
+ *
+ * O callback é chamado pelas threads do pool: precisa ser thread-safe.
+ */
+public class Harness {
+
+    /** Resultado de uma execução (programa × entrada). */
+    public static final class Result {
+        public final int program;     // índice na lista de programas
+        public final int input;       // índice na lista de entradas
+        public final int status;      // CPU.HALTED, CPU.INVALID, CPU.BUDGET ou CPU.LOOP (ERROR em exceção)
+        public final long steps;
+        public final int[] mem;
+        public final int[] outputs;
+        public final String error;    // mensagem da exceção quando status == ERROR
+
+        Result(int program, int input, int status, long steps, int[] mem, int[] outputs, String error) {
+            this.program = program;
+            this.input = input;
+            this.status = status;
+            this.steps = steps;
+            this.mem = mem;
+            this.outputs = outputs;
+            this.error = error;
+        }
+    }
+
+    /** Execução interrompida por exceção (ex.: endereço inválido). */
+    public static final int ERROR = -1;
+
+    /** Execuções por tarefa folha antes de parar de dividir. */
+    private static final int GRAIN = 8;
+
+    private final ForkJoinPool pool;
+    private final long stepBudget;
+    private final boolean tiered;
+    private final boolean wide;
+    private volatile ResultCache cache;
+
+    /** Usa o pool comum e o interpretador run(). */
+    public Harness(long stepBudget) { this(ForkJoinPool.commonPool(), stepBudget, false); }
+
+    /**
+     * @param tiered true para executar com o TieredEngine (compensa em programas longos)
+     */
+    public Harness(ForkJoinPool pool, long stepBudget, boolean tiered) { this(pool, stepBudget, tiered, false); }
+
+    /**
+     * @param wide true para programas de Assembler.assembleWide(), executados numa CPU.wide()
+     */
+    public Harness(ForkJoinPool pool, long stepBudget, boolean tiered, boolean wide) {
+        if (stepBudget < 1) throw new IllegalArgumentException("Orçamento de passos inválido: " + stepBudget);
+        this.pool = pool;
+        this.stepBudget = stepBudget;
+        this.tiered = tiered;
+        this.wide = wide;
+    }
+
+    /** Reaproveita resultados de execuções idênticas (null = sempre simula; só vale fora do modo estendido). */
+    public void setCache(ResultCache cache) { this.cache = cache; }
+
+    /** Executa programas × entradas e bloqueia até todas as execuções terminarem. */
+    public void run(List<Assembler.AsmOut> programs, List<int[]> inputs, Consumer<Result> callback) {
+        final List<Assembler.AsmOut> progs = new ArrayList<>(programs);
+        final List<int[]> ins = new ArrayList<>(inputs);
+        long total = (long) progs.size() * ins.size();
+        if (total == 0) return;
+        pool.invoke(new Task(progs, ins, callback, 0, total));
+    }
+
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Assembler.AsmOut> programs;
+        private final List<int[]> inputs;
+        private final Consumer<Result> callback;
+        private final long from, to;
+
+        Task(List<Assembler.AsmOut> programs, List<int[]> inputs, Consumer<Result> callback, long from, long to) {
+            this.programs = programs;
+            this.inputs = inputs;
+            this.callback = callback;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                CPU cpu = wide ? CPU.wide() : new CPU();
+                for (long i = from; i < to; i++) {
+                    int p = (int) (i / inputs.size());
+                    int in = (int) (i % inputs.size());
+                    callback.accept(runOne(cpu, p, in));
+                }
+                return;
+            }
+            long mid = (from + to) >>> 1;
+            invokeAll(new Task(programs, inputs, callback, from, mid),
+                      new Task(programs, inputs, callback, mid, to));
+        }
+
+        private Result runOne(CPU cpu, int p, int in) {
+            // O cache guarda 256 bytes de memória e não distingue os modos
+            ResultCache rc = wide ? null : cache;
+            String key = null;
+            if (rc != null) {
+                key = ResultCache.key(programs.get(p), inputs.get(in), stepBudget);
+                ResultCache.Entry e = rc.get(key);
+                if (e != null) {
+                    int[] mem = new int[256];
+                    for (int a = 0; a < mem.length; a++) mem[a] = e.state.mem(a);
+                    return new Result(p, in, e.status, e.steps, mem, e.outputs(), null);
+                }
+            }
+
+            BufferedIO io = BufferedIO.of(inputs.get(in));
+            cpu.load(programs.get(p));
+            cpu.io = io;
+            try {
+                int status;
+                long steps;
+                if (tiered) {
+                    TieredEngine jit = new TieredEngine(cpu);
+                    status = jit.run(stepBudget);
+                    steps = jit.lastRunSteps;
+                } else {
+                    status = cpu.run(stepBudget);
+                    steps = cpu.lastRunSteps;
+                }
+                if (rc != null) rc.put(key, new ResultCache.Entry(status, steps, cpu.snapshot(), io.outputs()));
+                return new Result(p, in, status, steps, cpu.mem.toArray(), io.outputs(), null);
+            } catch (RuntimeException e) {
+                return new Result(p, in, ERROR, 0, cpu.mem.toArray(), io.outputs(), e.getMessage());
+            }
+        }
+    }
+}
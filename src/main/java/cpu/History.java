@@ -0,0 +1,254 @@
+package cpu;
+
+import java.util.Arrays;
+
+/**
+ * Execução reversível: guarda snapshots periódicos (checkpoints) e os valores
+ * lidos por IN, e volta no tempo restaurando o checkpoint mais próximo e
+ * reexecutando até o passo desejado.
+ *
+ * A memória fica limitada: quando os checkpoints chegam a maxCheckpoints,
+ * metade é descartada e o intervalo dobra. Voltar um passo custa no máximo
+ * um intervalo de reexecução. Só os valores de IN crescem com a execução.
+ */
+public class History {
+    private final CPU cpu;
+    private final int maxCheckpoints;
+    private final int initialInterval;
+    private int interval;
+
+    // Checkpoints: posição (passos desde reset), snapshot e quantos INs já tinham sido lidos
+    private final long[] cpPos;
+    private final Snapshot[] cpSnap;
+    private final int[] cpIn;
+    private int cpCount;
+
+    // Valores lidos por IN, na ordem, e o próximo a consumir
+    private int[] inLog = new int[16];
+    private int inLen;
+    private int inCursor;
+
+    private long position;
+    private boolean replaying;
+    // Ganchos da CPU desligados durante a reexecução
+    private TraceBuffer savedTrace;
+    private PerfCounters savedCounters;
+    private LoopDetector savedLoopDetector;
+    private Profiler savedProfiler;
+    private Breakpoints savedBreakpoints;
+    private IODevice device;
+
+    public History(CPU cpu) { this(cpu, 1024, 256); }
+
+    public History(CPU cpu, int interval, int maxCheckpoints) {
+        if (interval < 1 || maxCheckpoints < 2) throw new IllegalArgumentException("Parâmetros de histórico inválidos");
+        this.cpu = cpu;
+        this.initialInterval = interval;
+        this.maxCheckpoints = maxCheckpoints;
+        cpPos = new long[maxCheckpoints];
+        cpSnap = new Snapshot[maxCheckpoints];
+        cpIn = new int[maxCheckpoints];
+        device = cpu.io;
+        cpu.io = new Recorder();
+        reset();
+    }
+
+    /** Troca o dispositivo real de E/S (o gravador continua instalado na CPU). */
+    public void setDevice(IODevice device) { this.device = device; }
+
+    /** Esquece o histórico; o estado atual da CPU vira o passo 0. Chame depois de carregar/resetar. */
+    public void reset() {
+        interval = initialInterval;
+        cpCount = 0;
+        inLen = 0;
+        inCursor = 0;
+        position = 0;
+        Arrays.fill(cpSnap, null);
+        addCheckpoint();
+    }
+
+    /** Passos executados desde reset(). */
+    public long position() { return position; }
+
+    /**
+     * Executa uma instrução (como cpu.stepQuiet()), registrando checkpoints.
+     * @return CPU.RUNNING, CPU.HALTED, CPU.INVALID, CPU.LOOP, CPU.BREAK ou CPU.INPUT
+     */
+    public int step() {
+        if (cpu.halted) return cpu.haltReason;
+        int st = cpu.stepQuiet();
+        position += cpu.lastRunSteps;   // 0 se parou antes de um IN (cpu.stopAtInput)
+        if (position % interval == 0 && position > cpPos[cpCount - 1]) addCheckpoint();
+        return st;
+    }
+
+    /**
+     * Executa até maxSteps instruções com cpu.run(), parando em cada fronteira de
+     * checkpoint: o histórico fica igual ao de maxSteps chamadas a step().
+     * @return CPU.HALTED, CPU.INVALID, CPU.BUDGET, CPU.LOOP, CPU.BREAK ou CPU.INPUT
+     */
+    public int run(long maxSteps) {
+        if (cpu.halted) return cpu.haltReason;
+        long done = 0;
+        while (done < maxSteps) {
+            long next = (position / interval + 1) * interval;
+            int st = cpu.run(Math.min(maxSteps - done, next - position));
+            done += cpu.lastRunSteps;
+            position += cpu.lastRunSteps;
+            if (position % interval == 0 && position > cpPos[cpCount - 1]) addCheckpoint();
+            if (st != CPU.BUDGET) return st;
+        }
+        return CPU.BUDGET;
+    }
+
+    /** Volta uma instrução. @return false se já está no passo 0 */
+    public boolean stepBack() {
+        if (position == 0) return false;
+        seek(position - 1);
+        return true;
+    }
+
+    /**
+     * Leva a CPU ao estado de depois de target passos (0 <= target <= position()).
+     * Com target > 0, a última instrução é sempre reexecutada, então
+     * cpu.lastReadAddr()/lastWriteAddr() descrevem o passo target.
+     */
+    public void seek(long target) {
+        if (target < 0 || target > position) throw new IllegalArgumentException("Passo fora do histórico: " + target);
+        int c = checkpointAtOrBefore(target == 0 ? 0 : target - 1);
+        restoreCheckpoint(c);
+        replay(target - cpPos[c]);
+    }
+
+    /**
+     * Volta até a última vez em que a CPU esteve prestes a executar um dos endereços dados
+     * (ex.: as instruções de uma linha do código-fonte).
+     * @return false (sem mudar o estado) se isso não aconteceu antes do passo atual
+     */
+    public boolean runBackTo(boolean[] addrs) {
+        long end = position;
+        // Procura de trás para frente, um intervalo entre checkpoints por vez
+        for (int c = checkpointAtOrBefore(end == 0 ? 0 : end - 1); c >= 0; c--) {
+            long from = cpPos[c];
+            long limit = c + 1 < cpCount ? Math.min(cpPos[c + 1], end) : end;
+            restoreCheckpoint(c);
+            long found = -1;
+            beginReplay();
+            try {
+                for (long p = from; p < limit; p++) {
+                    if (addrs[cpu.PC]) found = p;
+                    cpu.stepQuiet();
+                }
+            } finally {
+                endReplay();
+                position = end;
+            }
+            if (found >= 0) {
+                seek(found);
+                return true;
+            }
+        }
+        seek(end);
+        return false;
+    }
+
+    private int checkpointAtOrBefore(long target) {
+        int lo = 0, hi = cpCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (cpPos[mid] <= target) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private void restoreCheckpoint(int c) {
+        cpu.restore(cpSnap[c]);
+        inCursor = cpIn[c];
+        position = cpPos[c];
+    }
+
+    // A última instrução vai por cpu.step(), que registra os endereços acessados
+    private void replay(long steps) {
+        beginReplay();
+        try {
+            for (long i = 0; i < steps && !cpu.halted; i++) {
+                if (i == steps - 1) cpu.step(); else cpu.stepQuiet();
+                position++;
+            }
+        } finally {
+            endReplay();
+        }
+    }
+
+    // Reexecução roda sem nenhum gancho: não grava no rastro, não conta de novo nos
+    // contadores nem no perfil, não procura laços e não para em breakpoints
+    private void beginReplay() {
+        replaying = true;
+        savedTrace = cpu.trace;
+        savedCounters = cpu.counters;
+        savedLoopDetector = cpu.loopDetector;
+        savedProfiler = cpu.profiler;
+        savedBreakpoints = cpu.breakpoints;
+        cpu.trace = null;
+        cpu.counters = null;
+        cpu.loopDetector = null;
+        cpu.profiler = null;
+        cpu.breakpoints = null;
+    }
+
+    private void endReplay() {
+        cpu.trace = savedTrace;
+        cpu.counters = savedCounters;
+        cpu.loopDetector = savedLoopDetector;
+        cpu.profiler = savedProfiler;
+        cpu.breakpoints = savedBreakpoints;
+        // O detector não viu os STOREs da reexecução: recomeça a partir do estado atual
+        if (savedLoopDetector != null) savedLoopDetector.reset(cpu);
+        savedTrace = null;
+        savedCounters = null;
+        savedLoopDetector = null;
+        savedProfiler = null;
+        savedBreakpoints = null;
+        replaying = false;
+    }
+
+    private void addCheckpoint() {
+        if (cpCount == maxCheckpoints) thin();
+        cpPos[cpCount] = position;
+        cpSnap[cpCount] = cpu.snapshot();
+        cpIn[cpCount] = inCursor;
+        cpCount++;
+    }
+
+    // Mantém um checkpoint sim, um não, e dobra o intervalo
+    private void thin() {
+        int w = 0;
+        for (int i = 0; i < cpCount; i += 2) {
+            cpPos[w] = cpPos[i];
+            cpSnap[w] = cpSnap[i];
+            cpIn[w] = cpIn[i];
+            w++;
+        }
+        for (int i = w; i < cpCount; i++) cpSnap[i] = null;
+        cpCount = w;
+        interval *= 2;
+    }
+
+    // Grava os INs na primeira execução e os repete ao reexecutar; OUT não se repete no replay
+    private final class Recorder implements IODevice {
+        @Override
+        public int read() {
+            if (inCursor < inLen) return inLog[inCursor++];
+            int v = device.read();
+            if (inLen == inLog.length) inLog = Arrays.copyOf(inLog, inLen * 2);
+            inLog[inLen++] = v;
+            inCursor = inLen;
+            return v;
+        }
+
+        @Override
+        public void write(int value) {
+            if (!replaying) device.write(value);
+        }
+    }
+}
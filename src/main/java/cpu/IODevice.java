@@ -0,0 +1,20 @@
+package cpu;
+
+/**
+ * Dispositivo de E/S usado pelas instruções IN e OUT da CPU.
+ * A CPU não conhece Swing: o diálogo de entrada é só uma implementação (DialogIO).
+ */
+public interface IODevice {
+
+    /** Valor lido por IN (a CPU aplica & 0xFF). */
+    int read();
+
+    /** Valor do ACC enviado por OUT. */
+    void write(int value);
+
+    /** Dispositivo vazio: IN lê 0 e OUT é descartado. */
+    IODevice NULL = new IODevice() {
+        @Override public int read() { return 0; }
+        @Override public void write(int value) { }
+    };
+}
@@ -0,0 +1,116 @@
+package cpu;
+
+/**
+ * Detecta laços infinitos comprovados: se o estado completo da máquina
+ * (PC, ACC, Z, N e memória) se repete sem IN no meio, ela nunca vai parar.
+ *
+ * O hash da memória é a soma de mix(endereço, valor) de cada célula, atualizado
+ * a cada STORE (soma o valor novo, subtrai o antigo) em vez de recalculado por passo.
+ * A busca do ciclo segue o algoritmo de Brent: guarda o estado em passos que são
+ * potências de 2 e compara o hash atual com o guardado; um hash igual é confirmado
+ * comparando o estado exato, então não há falso positivo.
+ *
+ * Quem escrever em cpu.mem por fora (load/reset/restore já fazem isso) deve chamar reset(cpu).
+ */
+public class LoopDetector {
+    /** true depois que um laço foi comprovado. */
+    public boolean detected;
+    /** Instruções por volta do laço. */
+    public long period;
+    /** Menor e maior PC executados dentro do laço. */
+    public int loopMinPC, loopMaxPC;
+
+    private long memHash;
+
+    // Estado guardado (Brent)
+    private long savedHash;
+    private int sPC, sACC, sZ, sN;
+    private int[] savedMem = new int[0];
+    private long power, lam;
+    private int minPC, maxPC;
+
+    public LoopDetector(CPU cpu) { reset(cpu); }
+
+    /** Recalcula o hash da memória e recomeça a busca a partir do estado atual. */
+    public void reset(CPU cpu) {
+        long h = 0;
+        for (int a = 0; a < cpu.mem.size(); a++) h += cell(a, cpu.mem.get(a));
+        memHash = h;
+        detected = false;
+        period = 0;
+        loopMinPC = loopMaxPC = -1;
+        save(cpu);
+    }
+
+    void onStore(int addr, int oldValue, int newValue) {
+        memHash += cell(addr, newValue) - cell(addr, oldValue);
+    }
+
+    /**
+     * Chamado depois de cada instrução.
+     * @return true quando o estado atual repete o guardado (laço comprovado)
+     */
+    boolean afterStep(CPU cpu, int executedPC, boolean readInput) {
+        if (detected) return true;
+        if (readInput) {
+            // O futuro depende da entrada: recomeça a busca a partir daqui
+            save(cpu);
+            return false;
+        }
+        if (executedPC < minPC) minPC = executedPC;
+        if (executedPC > maxPC) maxPC = executedPC;
+        lam++;
+
+        long h = hash(cpu);
+        if (h == savedHash && sameAsSaved(cpu)) {
+            detected = true;
+            period = lam;
+            loopMinPC = minPC;
+            loopMaxPC = maxPC;
+            return true;
+        }
+        if (lam == power) {
+            long p = power;
+            save(cpu);
+            power = p * 2;
+        }
+        return false;
+    }
+
+    private void save(CPU cpu) {
+        savedHash = hash(cpu);
+        sPC = cpu.PC; sACC = cpu.ACC; sZ = cpu.Z; sN = cpu.N;
+        if (savedMem.length != cpu.mem.size()) savedMem = new int[cpu.mem.size()];
+        cpu.mem.copyTo(savedMem);
+        power = 1;
+        lam = 0;
+        minPC = Integer.MAX_VALUE;
+        maxPC = Integer.MIN_VALUE;
+    }
+
+    private boolean sameAsSaved(CPU cpu) {
+        if (cpu.PC != sPC || cpu.ACC != sACC || cpu.Z != sZ || cpu.N != sN) return false;
+        PagedMemory m = cpu.mem;
+        for (int a = 0; a < savedMem.length; a++) if (m.get(a) != savedMem[a]) return false;
+        return true;
+    }
+
+    private long hash(CPU cpu) {
+        long regs = cpu.PC | (long) (cpu.ACC & 0xFFFF) << 16 | (long) cpu.Z << 32 | (long) cpu.N << 33 | 1L << 40;
+        return memHash ^ mix(regs);
+    }
+
+    private static long cell(int addr, int value) {
+        return mix((long) addr << 32 | (value & 0xFFFFFFFFL));
+    }
+
+    // Finalizador do MurmurHash3 (64 bits)
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
@@ -4,17 +4,23 @@ package cpu;
  * Ponto de entrada (Main) principal da aplicação Simulador de CPU.
  *
  * Esta classe serve como o "lançador" (launcher) oficial.
- * Ela simplesmente delega toda a inicialização e execução
+ * Sem argumentos, delega toda a inicialização e execução
  * para a classe AppSwing, que contém nossa interface gráfica (GUI).
+ * Com argumentos, roda o programa pela linha de comando (Cli),
+ * sem carregar nenhuma classe do Swing.
  */
 public class Main {
 
     /**
      * O método main da aplicação.
-     * @param args Argumentos de linha de comando (não utilizados).
+     * @param args Vazio para a interface gráfica; senão, argumentos da Cli.
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            // AppSwing só é carregada no outro ramo, então a JVM nem inicializa o Swing aqui
+            System.exit(Cli.run(args, System.in, System.out, System.err));
+        }
         // Chama o método main da nossa aplicação Swing para iniciar a interface
         AppSwing.main(args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,122 @@
+package cpu;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memória da CPU: bytes numa tabela de páginas de PAGE células. São SIZE
+ * células na CPU padrão e até 64 KiB no modo estendido (CPU.wide()).
+ *
+ * Cada página leva a época de quem a criou, e cada memória tem a sua época
+ * atual. set() só escreve direto numa página da época atual; qualquer outra
+ * é copiada primeiro. fork() e Snapshot trocam a época da memória, então as
+ * páginas que eles passaram a compartilhar nunca mudam e não há contagem
+ * nenhuma para atualizar ou devolver. As épocas vêm de um contador global e
+ * nunca se repetem.
+ *
+ * clear() também é só uma troca de época: páginas anteriores a ela (base)
+ * são lidas como zero, e a primeira escrita cria uma página zerada.
+ */
+public final class PagedMemory {
+    public static final int SIZE = 256;
+    public static final int PAGE = 16;
+    public static final int PAGES = SIZE / PAGE;
+    /** Maior memória aceita (endereços de 16 bits). */
+    public static final int MAX_SIZE = 65536;
+
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    static final class Page {
+        final byte[] cells;
+        final long epoch;
+
+        Page(byte[] cells, long epoch) { this.cells = cells; this.epoch = epoch; }
+    }
+
+    // Página inicial de todas as posições: é anterior a qualquer base, então vale zero e nunca é escrita
+    private static final Page EMPTY = new Page(new byte[PAGE], 0);
+
+    private final Page[] table;
+    private long epoch = EPOCHS.incrementAndGet();
+    private long base = epoch;   // páginas de épocas anteriores valem zero
+
+    public PagedMemory() { this(SIZE); }
+
+    /** @param size tamanho em bytes: potência de 2 de SIZE até MAX_SIZE */
+    public PagedMemory(int size) {
+        if (size < SIZE || size > MAX_SIZE || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Tamanho de memória inválido: " + size);
+        }
+        table = new Page[size / PAGE];
+        Arrays.fill(table, EMPTY);
+    }
+
+    private PagedMemory(Page[] shared, long base) {
+        table = shared.clone();
+        this.base = base;
+    }
+
+    public int size() { return table.length * PAGE; }
+
+    public int get(int addr) {
+        Page pg = table[addr >>> 4];
+        return pg.epoch >= base ? pg.cells[addr & 0xF] & 0xFF : 0;
+    }
+
+    public void set(int addr, int value) {
+        Page pg = table[addr >>> 4];
+        if (pg.epoch != epoch) pg = own(addr >>> 4);
+        pg.cells[addr & 0xF] = (byte) value;
+    }
+
+    // Cópia na escrita: a página passa a ser só desta memória (zerada, se for anterior ao último clear)
+    private Page own(int p) {
+        Page old = table[p];
+        Page copy = new Page(old.epoch >= base ? old.cells.clone() : new byte[PAGE], epoch);
+        table[p] = copy;
+        return copy;
+    }
+
+    /** Zera todas as células em tempo constante. */
+    public void clear() { base = epoch = EPOCHS.incrementAndGet(); }
+
+    /** Nova memória com o mesmo conteúdo, compartilhando todas as páginas. */
+    public PagedMemory fork() {
+        epoch = EPOCHS.incrementAndGet();
+        return new PagedMemory(table, base);
+    }
+
+    /** Copia as células para dst (de tamanho size()). */
+    public void copyTo(int[] dst) {
+        for (int a = 0; a < dst.length; a++) dst[a] = get(a);
+    }
+
+    public int[] toArray() {
+        int[] out = new int[size()];
+        copyTo(out);
+        return out;
+    }
+
+    // Época a partir da qual as páginas valem (para quem guardar share())
+    long base() { return base; }
+
+    // Páginas atuais para quem as guardar (Snapshot); daqui em diante elas são só leitura
+    Page[] share() {
+        epoch = EPOCHS.incrementAndGet();
+        return table.clone();
+    }
+
+    // Passa a usar as páginas dadas (de um Snapshot de memória do mesmo tamanho); a época
+    // nova fica depois da base do snapshot, senão as próximas escritas valeriam zero
+    void adopt(Page[] pages, long base) {
+        System.arraycopy(pages, 0, table, 0, table.length);
+        this.base = base;
+        epoch = EPOCHS.incrementAndGet();
+    }
+
+    // Leitura de uma célula em páginas guardadas por share()
+    static int get(Page[] pages, long base, int addr) {
+        Page pg = pages[addr >>> 4];
+        return pg.epoch >= base ? pg.cells[addr & 0xF] & 0xFF : 0;
+    }
+}
@@ -0,0 +1,59 @@
+package cpu;
+
+import java.util.Arrays;
+
+/**
+ * Contadores de desempenho da CPU. Ficam ligados enquanto cpu.counters != null;
+ * desligados, run() continua no caminho rápido e não paga nada.
+ *
+ * Ciclos = bytes buscados (opcode + operando) + acessos de dados à memória.
+ */
+public class PerfCounters {
+    public final long[] retired = new long[256];   // instruções executadas por opcode
+    public final long[] reads;                     // leituras de dados por endereço
+    public final long[] writes;                    // escritas por endereço
+    public long jzTaken, jzNotTaken;
+    public long jnTaken, jnNotTaken;
+    public long instructions;
+    public long cycles;
+
+    public PerfCounters() { this(PagedMemory.SIZE); }
+
+    /** @param memSize tamanho da memória da CPU (mem.size()) */
+    public PerfCounters(int memSize) {
+        reads = new long[memSize];
+        writes = new long[memSize];
+    }
+
+    void record(int op, int fetched, int z, int n, int readAddr, int writeAddr) {
+        retired[op & 0xFF]++;
+        instructions++;
+        long c = fetched;
+        if (readAddr >= 0) { reads[readAddr]++; c++; }
+        if (writeAddr >= 0) { writes[writeAddr]++; c++; }
+        cycles += c;
+        if (op == CPU.JZ) { if (z == 1) jzTaken++; else jzNotTaken++; }
+        else if (op == CPU.JN) { if (n == 1) jnTaken++; else jnNotTaken++; }
+    }
+
+    /** Cópia independente dos valores atuais. */
+    public PerfCounters snapshot() {
+        PerfCounters c = new PerfCounters(reads.length);
+        System.arraycopy(retired, 0, c.retired, 0, 256);
+        System.arraycopy(reads, 0, c.reads, 0, reads.length);
+        System.arraycopy(writes, 0, c.writes, 0, writes.length);
+        c.jzTaken = jzTaken; c.jzNotTaken = jzNotTaken;
+        c.jnTaken = jnTaken; c.jnNotTaken = jnNotTaken;
+        c.instructions = instructions;
+        c.cycles = cycles;
+        return c;
+    }
+
+    public void reset() {
+        Arrays.fill(retired, 0);
+        Arrays.fill(reads, 0);
+        Arrays.fill(writes, 0);
+        jzTaken = jzNotTaken = jnTaken = jnNotTaken = 0;
+        instructions = cycles = 0;
+    }
+}
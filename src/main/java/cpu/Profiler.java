@@ -0,0 +1,69 @@
+package cpu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Perfil de execução: quantas vezes cada endereço foi executado. Fica ligado
+ * enquanto cpu.profiler != null; desligado, run() continua no caminho rápido.
+ *
+ * Os contadores são por PC; byLine() e lines() somam por linha do código-fonte
+ * usando o debugMap do montador (endereço → linha).
+ */
+public class Profiler {
+    public final long[] hits;   // execuções por endereço da instrução
+    public long total;
+
+    public Profiler() { this(PagedMemory.SIZE); }
+
+    /** @param memSize tamanho da memória da CPU (mem.size()) */
+    public Profiler(int memSize) { hits = new long[memSize]; }
+
+    /** Uma linha do código com instruções executadas. */
+    public static final class Line {
+        public final int line;        // 0-based
+        public final long count;
+        public final double percent;  // do total de instruções
+
+        Line(int line, long count, double percent) {
+            this.line = line;
+            this.count = count;
+            this.percent = percent;
+        }
+    }
+
+    void record(int pc) {
+        hits[pc]++;
+        total++;
+    }
+
+    public void reset() {
+        Arrays.fill(hits, 0);
+        total = 0;
+    }
+
+    /** Execuções por linha (índice = linha); linhas sem instruções ficam com 0. */
+    public long[] byLine(Map<Integer, Integer> debugMap, int lineCount) {
+        long[] out = new long[lineCount];
+        for (Map.Entry<Integer, Integer> e : debugMap.entrySet()) {
+            int addr = e.getKey(), line = e.getValue();
+            if (addr >= 0 && addr < hits.length && line >= 0 && line < lineCount) out[line] += hits[addr];
+        }
+        return out;
+    }
+
+    /** Linhas executadas ao menos uma vez, da mais executada para a menos. */
+    public List<Line> lines(Map<Integer, Integer> debugMap) {
+        int lineCount = 0;
+        for (int line : debugMap.values()) lineCount = Math.max(lineCount, line + 1);
+        long[] counts = byLine(debugMap, lineCount);
+        List<Line> out = new ArrayList<>();
+        for (int l = 0; l < lineCount; l++) {
+            if (counts[l] > 0) out.add(new Line(l, counts[l], total == 0 ? 0 : 100.0 * counts[l] / total));
+        }
+        out.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : Integer.compare(a.line, b.line));
+        return out;
+    }
+}
@@ -0,0 +1,193 @@
+package cpu;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Imagem binária de um programa montado (extensão .img), para carregar sem
+ * remontar o fonte. Formato, versão 1, little-endian:
+ *
+ * <pre>
+ *   "CPUI"  u16 versão  u16 flags (bit 0: FLAG_WIDE, montado para CPU.wide())
+ *   u32 n   código: n bytes
+ *   u32 n   dataInits: n × (u16 endereço, u8 valor)
+ *   u32 n   debugMap:  n × (u16 endereço, u32 linha)
+ *   u32 n   símbolos:  n × (u16 endereço, u16 tamanho, nome em UTF-8)
+ * </pre>
+ *
+ * load(file, cpu) mapeia o arquivo com FileChannel.map e copia direto para
+ * cpu.mem, sem criar os mapas; read(file) devolve o AsmOut completo.
+ * Imagens do modo estendido (isWide) só carregam numa CPU.wide(), e vice-versa.
+ */
+public final class ProgramImage {
+    public static final int MAGIC = 0x49555043; // "CPUI" em little-endian
+    public static final int VERSION = 1;
+    /** Programa montado com Assembler.assembleWide(). */
+    public static final int FLAG_WIDE = 1;
+
+    // Nenhuma seção tem mais entradas que endereços no modo estendido
+    private static final int MAX_ENTRIES = 65536;
+
+    private ProgramImage() {}
+
+    public static void write(Assembler.AsmOut out, Path file) throws IOException {
+        write(out, file, 0);
+    }
+
+    /** @param flags 0 ou FLAG_WIDE */
+    public static void write(Assembler.AsmOut out, Path file, int flags) throws IOException {
+        int size = 8 + 4 + out.code.length
+                + 4 + out.dataInits.size() * 3
+                + 4 + out.debugMap.size() * 6
+                + 4;
+        byte[][] names = new byte[out.symbols.size()][];
+        int i = 0;
+        for (String name : out.symbols.keySet()) {
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+            size += 4 + names[i].length;
+            i++;
+        }
+
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putShort((short) VERSION).putShort((short) flags);
+        b.putInt(out.code.length);
+        for (int v : out.code) b.put((byte) v);
+        b.putInt(out.dataInits.size());
+        for (Map.Entry<Integer,Integer> e : out.dataInits.entrySet()) {
+            b.putShort(e.getKey().shortValue()).put(e.getValue().byteValue());
+        }
+        b.putInt(out.debugMap.size());
+        for (Map.Entry<Integer,Integer> e : out.debugMap.entrySet()) {
+            b.putShort(e.getKey().shortValue()).putInt(e.getValue());
+        }
+        b.putInt(names.length);
+        i = 0;
+        for (int addr : out.symbols.values()) {
+            b.putShort((short) addr).putShort((short) names[i].length).put(names[i]);
+            i++;
+        }
+        Files.write(file, b.array());
+    }
+
+    /** Lê a imagem inteira, com símbolos e debugMap. */
+    public static Assembler.AsmOut read(Path file) throws IOException {
+        ByteBuffer b = map(file);
+        try {
+            return read(b, file);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Imagem de programa truncada: " + file);
+        }
+    }
+
+    private static Assembler.AsmOut read(ByteBuffer b, Path file) throws IOException {
+        int[] code = new int[count(b, 1, "código", file)];
+        for (int i = 0; i < code.length; i++) code[i] = b.get() & 0xFF;
+
+        Map<Integer,Integer> dataInits = new LinkedHashMap<>();
+        for (int n = count(b, 3, "dataInits", file); n > 0; n--) {
+            int addr = b.getShort() & 0xFFFF;
+            dataInits.put(addr, b.get() & 0xFF);
+        }
+        Map<Integer,Integer> debugMap = new LinkedHashMap<>();
+        for (int n = count(b, 6, "debugMap", file); n > 0; n--) {
+            int addr = b.getShort() & 0xFFFF;
+            debugMap.put(addr, b.getInt());
+        }
+        Map<String,Integer> symbols = new LinkedHashMap<>();
+        for (int n = count(b, 4, "símbolos", file); n > 0; n--) {
+            int addr = b.getShort() & 0xFFFF;
+            int len = b.getShort() & 0xFFFF;
+            if (len > b.remaining()) throw corrupt("nome de símbolo com " + len + " bytes", file);
+            byte[] name = new byte[len];
+            b.get(name);
+            symbols.put(new String(name, StandardCharsets.UTF_8), addr);
+        }
+        return new Assembler.AsmOut(code, dataInits, debugMap, symbols);
+    }
+
+    /** true se a imagem foi gravada com FLAG_WIDE. */
+    public static boolean isWide(Path file) throws IOException {
+        return (flags(map(file)) & FLAG_WIDE) != 0;
+    }
+
+    /** Reseta a CPU e copia código e dados da imagem para a memória (como cpu.load). */
+    public static void load(Path file, CPU cpu) throws IOException {
+        ByteBuffer b = map(file);
+        boolean wide = (flags(b) & FLAG_WIDE) != 0;
+        if (wide && !cpu.wide) throw new IOException("Imagem do modo estendido (use CPU.wide()): " + file);
+        if (!wide && cpu.wide) throw new IOException("Imagem não é do modo estendido: " + file);
+        try {
+            load(b, cpu, file);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Imagem de programa truncada: " + file);
+        }
+    }
+
+    // Tudo é validado antes de tocar na CPU: uma imagem ruim não deixa a memória pela metade
+    private static void load(ByteBuffer b, CPU cpu, Path file) throws IOException {
+        PagedMemory mem = cpu.mem;
+        int len = count(b, 1, "código", file);
+        if (len > mem.size()) throw corrupt("código com " + len + " bytes", file);
+        int codeAt = b.position();
+        b.position(codeAt + len);
+        int dataCount = count(b, 3, "dataInits", file);
+        int dataAt = b.position();
+        if (cpu.wide) {
+            // Como cpu.load: no modo estendido, variável fora da memória é erro
+            for (int k = 0; k < dataCount; k++) {
+                int addr = b.getShort(dataAt + 3 * k) & 0xFFFF;
+                if (addr >= mem.size()) throw new IOException("Variável fora da memória de " + mem.size() + " bytes: " + addr + ": " + file);
+            }
+        }
+
+        cpu.reset();
+        for (int i = 0; i < len; i++) mem.set(i, b.get(codeAt + i) & 0xFF);
+        for (int k = 0; k < dataCount; k++) {
+            int addr = b.getShort(dataAt + 3 * k) & 0xFFFF;
+            int v = b.get(dataAt + 3 * k + 2) & 0xFF;
+            if (addr < mem.size()) mem.set(addr, v);
+        }
+        // debugMap e símbolos não interessam à CPU
+        cpu.memoryLoaded();
+    }
+
+    // Contagem de uma seção: precisa caber no espaço de endereços e no resto do arquivo
+    // (entrySize = bytes mínimos por entrada), senão a imagem está corrompida
+    private static int count(ByteBuffer b, int entrySize, String section, Path file) throws IOException {
+        int n = b.getInt();
+        if (n < 0 || n > MAX_ENTRIES || (long) n * entrySize > b.remaining()) {
+            throw corrupt("tamanho de " + section + " inválido (" + n + ")", file);
+        }
+        return n;
+    }
+
+    private static IOException corrupt(String what, Path file) {
+        return new IOException("Imagem de programa corrompida, " + what + ": " + file);
+    }
+
+    // Mapeia o arquivo e valida o cabeçalho; devolve o buffer posicionado depois dele
+    private static ByteBuffer map(Path file) throws IOException {
+        MappedByteBuffer m;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            m = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        ByteBuffer b = m.order(ByteOrder.LITTLE_ENDIAN);
+        if (b.remaining() < 8 || b.getInt() != MAGIC) throw new IOException("Arquivo não é uma imagem de programa: " + file);
+        int version = b.getShort() & 0xFFFF;
+        if (version != VERSION) throw new IOException("Versão de imagem não suportada: " + version);
+        b.getShort(); // flags: lidos por flags(b)
+        return b;
+    }
+
+    private static int flags(ByteBuffer b) { return b.getShort(6) & 0xFFFF; }
+}
@@ -0,0 +1,196 @@
+package cpu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cache LRU de resultados de execução, indexada pelo conteúdo do programa
+ * montado (código + dataInits), pelas entradas e pelo orçamento de passos.
+ * A mesma submissão rodada de novo devolve o estado final guardado em vez de
+ * simular tudo outra vez.
+ *
+ * Opcionalmente grava cada resultado em um diretório (um arquivo por chave),
+ * que sobrevive entre execuções. Falhas de disco são ignoradas: a cache é só
+ * uma otimização. Os métodos são thread-safe.
+ */
+public class ResultCache {
+
+    /** Resultado guardado: status, passos, estado final e saídas. */
+    public static final class Entry {
+        public final int status;
+        public final long steps;
+        public final Snapshot state;
+        private final int[] outputs;
+
+        public Entry(int status, long steps, Snapshot state, int[] outputs) {
+            this.status = status;
+            this.steps = steps;
+            this.state = state;
+            this.outputs = outputs.clone();
+        }
+
+        public int[] outputs() { return outputs.clone(); }
+    }
+
+    private static final int FILE_MAGIC = 0x43505552; // "CPUR"
+
+    private final int maxEntries;
+    private final Path dir;
+    private final LinkedHashMap<String, Entry> map;
+
+    public long hits, misses;
+
+    public ResultCache(int maxEntries) { this(maxEntries, null); }
+
+    /** @param dir diretório para guardar os resultados em disco (null = só memória) */
+    public ResultCache(int maxEntries, Path dir) {
+        if (maxEntries < 1) throw new IllegalArgumentException("Tamanho de cache inválido: " + maxEntries);
+        this.maxEntries = maxEntries;
+        this.dir = dir;
+        this.map = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResultCache.Entry> eldest) {
+                return size() > ResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Chave (SHA-256 em hexadecimal) de programa + entradas + orçamento. */
+    public static String key(Assembler.AsmOut prog, int[] inputs, long stepBudget) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer b = ByteBuffer.allocate(8);
+        b.putLong(stepBudget);
+        md.update(b.array());
+        putInts(md, prog.code);
+        // dataInits em ordem de endereço, para a chave não depender da ordem do mapa
+        TreeMap<Integer, Integer> data = new TreeMap<>(prog.dataInits);
+        int[] flat = new int[data.size() * 2];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : data.entrySet()) {
+            flat[i++] = e.getKey();
+            flat[i++] = e.getValue();
+        }
+        putInts(md, flat);
+        putInts(md, inputs);
+
+        StringBuilder sb = new StringBuilder(64);
+        for (byte x : md.digest()) sb.append(String.format("%02x", x & 0xFF));
+        return sb.toString();
+    }
+
+    private static void putInts(MessageDigest md, int[] v) {
+        ByteBuffer b = ByteBuffer.allocate(4 + v.length * 4);
+        b.putInt(v.length);
+        for (int x : v) b.putInt(x);
+        md.update(b.array());
+    }
+
+    /** @return o resultado guardado, ou null */
+    public synchronized Entry get(String key) {
+        Entry e = map.get(key);
+        if (e == null && dir != null) {
+            e = readFile(dir.resolve(key + ".res"));
+            if (e != null) map.put(key, e);
+        }
+        if (e != null) hits++; else misses++;
+        return e;
+    }
+
+    public synchronized void put(String key, Entry e) {
+        map.put(key, e);
+        if (dir != null) writeFile(dir.resolve(key + ".res"), e);
+    }
+
+    public synchronized int size() { return map.size(); }
+
+    /** Esquece os resultados em memória (os arquivos em disco ficam). */
+    public synchronized void clear() { map.clear(); }
+
+    /**
+     * Deixa cpu no estado final de prog com essas entradas, simulando só se o
+     * resultado ainda não estiver na cache. cpu.io não é usado.
+     */
+    public Entry run(CPU cpu, Assembler.AsmOut prog, int[] inputs, long stepBudget) {
+        String k = key(prog, inputs, stepBudget);
+        Entry e = get(k);
+        if (e == null) {
+            IODevice old = cpu.io;
+            BufferedIO io = BufferedIO.of(inputs);
+            cpu.load(prog);
+            cpu.io = io;
+            try {
+                int st = cpu.run(stepBudget);
+                e = new Entry(st, cpu.lastRunSteps, cpu.snapshot(), io.outputs());
+            } finally {
+                cpu.io = old;
+            }
+            put(k, e);
+        } else {
+            cpu.restore(e.state);
+        }
+        return e;
+    }
+
+    // --- disco ---
+
+    private static void writeFile(Path file, Entry e) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "res", ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                Snapshot s = e.state;
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(e.status);
+                out.writeLong(e.steps);
+                out.writeInt(s.PC); out.writeInt(s.IR); out.writeInt(s.ACC); out.writeInt(s.Z); out.writeInt(s.N);
+                out.writeBoolean(s.halted);
+                out.writeInt(s.haltReason);
+                for (int a = 0; a < 256; a++) out.writeByte(s.mem(a));
+                out.writeInt(e.outputs.length);
+                for (int v : e.outputs) out.writeInt(v);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Entry readFile(Path file) {
+        if (!Files.isRegularFile(file)) return null;
+        try (InputStream is = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            if (in.readInt() != FILE_MAGIC) return null;
+            int status = in.readInt();
+            long steps = in.readLong();
+            CPU cpu = new CPU();
+            cpu.PC = in.readInt(); cpu.IR = in.readInt(); cpu.ACC = in.readInt(); cpu.Z = in.readInt(); cpu.N = in.readInt();
+            cpu.halted = in.readBoolean();
+            cpu.haltReason = in.readInt();
+            for (int a = 0; a < 256; a++) cpu.mem.set(a, in.readUnsignedByte());
+            int[] outputs = new int[in.readInt()];
+            for (int i = 0; i < outputs.length; i++) outputs[i] = in.readInt();
+            return new Entry(status, steps, cpu.snapshot(), outputs);
+        } catch (IOException ignored) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package cpu;
+
+/**
+ * Estado completo e imutável da CPU (registradores + memória).
+ *
+ * A memória não é copiada: o snapshot guarda as páginas da PagedMemory da CPU
+ * (que troca de época), e quem escrever depois copia a página.
+ * Tirar e restaurar um snapshot custa o mesmo qualquer que seja o conteúdo.
+ * Só é restaurado numa CPU da mesma configuração (padrão ou CPU.wide() do mesmo tamanho).
+ */
+public final class Snapshot {
+    public static final int PAGE = PagedMemory.PAGE;
+    /** Páginas da memória padrão (a do modo estendido tem size / PAGE). */
+    public static final int PAGES = PagedMemory.PAGES;
+
+    public final int PC, IR, ACC, Z, N;
+    public final boolean halted;
+    public final int haltReason;
+    public final boolean wide;
+    private final PagedMemory.Page[] pages;
+    private final long base;
+
+    Snapshot(CPU cpu) {
+        PC = cpu.PC; IR = cpu.IR; ACC = cpu.ACC; Z = cpu.Z; N = cpu.N;
+        halted = cpu.halted;
+        haltReason = cpu.haltReason;
+        wide = cpu.wide;
+        base = cpu.mem.base();
+        pages = cpu.mem.share();
+    }
+
+    public int size() { return pages.length * PAGE; }
+
+    public int mem(int addr) { return PagedMemory.get(pages, base, addr); }
+
+    /** Quantas páginas são o mesmo objeto nos dois snapshots. */
+    public int sharedPages(Snapshot other) {
+        int n = 0;
+        for (int p = 0; p < Math.min(pages.length, other.pages.length); p++) if (pages[p] == other.pages[p]) n++;
+        return n;
+    }
+
+    void copyTo(CPU cpu) {
+        if (cpu.wide != wide || cpu.mem.size() != size()) {
+            throw new IllegalArgumentException("Snapshot de outra configuração de CPU (" + size() + " bytes)");
+        }
+        cpu.PC = PC; cpu.IR = IR; cpu.ACC = ACC; cpu.Z = Z; cpu.N = N;
+        cpu.halted = halted;
+        cpu.haltReason = haltReason;
+        cpu.mem.adopt(pages, base);
+    }
+}
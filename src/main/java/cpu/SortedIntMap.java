@@ -0,0 +1,156 @@
+package cpu;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Mapa int -> int guardado em dois arrays primitivos com as chaves em ordem
+ * crescente (busca binária). O Assembler o usa para dataInits e debugMap, que
+ * já nascem ordenados, sem um objeto por entrada.
+ *
+ * Continua sendo um Map comum (put, remove, setValue, iterator.remove), como
+ * os LinkedHashMap de antes: inserir a maior chave é O(1) amortizado e uma
+ * chave no meio desloca o resto. Chaves e valores null não são aceitos.
+ */
+final class SortedIntMap extends AbstractMap<Integer, Integer> {
+    private int[] keys = new int[16];
+    private int[] vals = new int[16];
+    private int size;
+    private int modCount;
+
+    /** Acrescenta no fim; a chave precisa ser maior que todas as anteriores. */
+    void append(int key, int value) {
+        if (size > 0 && key <= keys[size - 1]) throw new IllegalStateException("Chave fora de ordem: " + key);
+        insertAt(size, key, value);
+    }
+
+    private void insertAt(int i, int key, int value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            vals = Arrays.copyOf(vals, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(vals, i, vals, i + 1, size - i);
+        keys[i] = key;
+        vals[i] = value;
+        size++;
+        modCount++;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(vals, i + 1, vals, i, size - i - 1);
+        size--;
+        modCount++;
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof Integer)) return -1;
+        int i = Arrays.binarySearch(keys, 0, size, (Integer) key);
+        return i >= 0 ? i : -1;
+    }
+
+    @Override public int size() { return size; }
+
+    @Override public boolean containsKey(Object key) { return indexOf(key) >= 0; }
+
+    @Override
+    public Integer get(Object key) {
+        int i = indexOf(key);
+        return i >= 0 ? vals[i] : null;
+    }
+
+    @Override
+    public Integer put(Integer key, Integer value) {
+        if (key == null || value == null) throw new NullPointerException("SortedIntMap não aceita null");
+        int k = key;
+        if (size == 0 || k > keys[size - 1]) {
+            insertAt(size, k, value);
+            return null;
+        }
+        int i = Arrays.binarySearch(keys, 0, size, k);
+        if (i >= 0) {
+            int old = vals[i];
+            vals[i] = value;
+            return old;
+        }
+        insertAt(-i - 1, k, value);
+        return null;
+    }
+
+    @Override
+    public Integer remove(Object key) {
+        int i = indexOf(key);
+        if (i < 0) return null;
+        int old = vals[i];
+        removeAt(i);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<Integer, Integer>> entrySet() {
+        return new AbstractSet<Entry<Integer, Integer>>() {
+            @Override public int size() { return size; }
+
+            @Override public void clear() { SortedIntMap.this.clear(); }
+
+            @Override
+            public Iterator<Entry<Integer, Integer>> iterator() {
+                return new Iterator<Entry<Integer, Integer>>() {
+                    private int i;
+                    private int last = -1;
+                    private int expected = modCount;
+
+                    @Override public boolean hasNext() { return i < size; }
+
+                    @Override
+                    public Entry<Integer, Integer> next() {
+                        if (expected != modCount) throw new ConcurrentModificationException();
+                        if (i >= size) throw new NoSuchElementException();
+                        last = i;
+                        return new Slot(i++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) throw new IllegalStateException();
+                        if (expected != modCount) throw new ConcurrentModificationException();
+                        removeAt(last);
+                        i = last;
+                        last = -1;
+                        expected = modCount;
+                    }
+                };
+            }
+        };
+    }
+
+    // Entrada ligada à posição: setValue grava no mapa, como nos mapas do java.util
+    private final class Slot extends SimpleEntry<Integer, Integer> {
+        private static final long serialVersionUID = 1L;
+        private final int index;
+
+        Slot(int index) {
+            super(keys[index], vals[index]);
+            this.index = index;
+        }
+
+        @Override
+        public Integer setValue(Integer value) {
+            if (value == null) throw new NullPointerException("SortedIntMap não aceita null");
+            vals[index] = value;
+            return super.setValue(value);
+        }
+    }
+}
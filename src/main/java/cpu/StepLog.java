@@ -0,0 +1,173 @@
+package cpu;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Anel de tamanho fixo com as explicações da execução. Cada entrada é um passo
+ * (evento do TraceBuffer, que só vira texto quando alguém pede) ou uma
+ * mensagem pronta. As mais antigas são descartadas quando o anel enche.
+ *
+ * Com record(), todas as entradas (as já guardadas e as novas) também vão
+ * para um arquivo, escritas por uma thread própria com buffer.
+ */
+public class StepLog {
+    private final long[] events;
+    private final String[] notes;   // null = entrada é um passo
+    private int head;               // próxima posição a gravar
+    private long total;             // entradas desde o último clear()
+    private Recorder recorder;
+
+    public StepLog(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacidade inválida: " + capacity);
+        events = new long[capacity];
+        notes = new String[capacity];
+    }
+
+    /** Registra um passo (evento de TraceBuffer). */
+    public void addStep(long event) { put(event, null); }
+
+    /** Registra uma mensagem. */
+    public void addNote(String msg) { put(0, msg); }
+
+    private void put(long event, String note) {
+        events[head] = event;
+        notes[head] = note;
+        if (++head == events.length) head = 0;
+        total++;
+        if (recorder != null) recorder.offer(note != null ? note : TraceBuffer.text(event));
+    }
+
+    public int capacity() { return events.length; }
+
+    /** Entradas disponíveis (no máximo capacity()). */
+    public int size() { return (int) Math.min(total, events.length); }
+
+    /** Entradas registradas desde o último clear(), inclusive as descartadas. */
+    public long total() { return total; }
+
+    /** Esquece as entradas (a gravação em arquivo, se houver, continua). */
+    public void clear() {
+        head = 0;
+        total = 0;
+        Arrays.fill(notes, null);
+    }
+
+    /** true se a i-ésima entrada (0 = mais antiga) é um passo. */
+    public boolean isStep(int i) { return notes[index(i)] == null; }
+
+    /** Evento da i-ésima entrada; só faz sentido se isStep(i). */
+    public long event(int i) { return events[index(i)]; }
+
+    /** Texto da i-ésima entrada, do mais antigo (0) ao mais recente (size() - 1). */
+    public String text(int i) {
+        int idx = index(i);
+        return notes[idx] != null ? notes[idx] : TraceBuffer.text(events[idx]);
+    }
+
+    private int index(int i) {
+        int size = size();
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Entrada inexistente: " + i);
+        int idx = head - size + i;
+        return idx < 0 ? idx + events.length : idx;
+    }
+
+    /**
+     * Passa a gravar o log no arquivo: primeiro as entradas guardadas, depois cada nova.
+     * Substitui a gravação anterior, que é encerrada.
+     */
+    public void record(Path file) throws IOException {
+        stopRecording();
+        Recorder r = new Recorder(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+        for (int i = 0; i < size(); i++) r.offer(text(i));
+        recorder = r;
+    }
+
+    public boolean isRecording() { return recorder != null; }
+
+    /**
+     * Encerra a gravação, esperando o que falta ser escrito.
+     * @throws IOException o primeiro erro de escrita, se houve algum
+     */
+    public void stopRecording() throws IOException {
+        Recorder r = recorder;
+        recorder = null;
+        if (r != null) r.close();
+    }
+
+    // Fila limitada: se o disco não acompanhar, quem registra espera em vez de acumular memória
+    private static final class Recorder implements Closeable {
+        private static final String END = new String("fim");   // comparado por identidade
+
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(4096);
+        private final BufferedWriter out;
+        private final Thread thread;
+        private volatile IOException error;
+
+        Recorder(BufferedWriter out) {
+            this.out = out;
+            thread = new Thread(this::drain, "gravador-log");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void offer(String line) {
+            if (error != null) return;
+            try {
+                queue.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void drain() {
+            try (BufferedWriter w = out) {
+                for (String line = queue.take(); line != END; line = queue.take()) {
+                    if (error != null) continue;
+                    try {
+                        w.write(line);
+                        w.newLine();
+                        // Fila vazia: descarrega, para o arquivo acompanhar a execução
+                        if (queue.isEmpty()) w.flush();
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+            } catch (IOException e) {
+                if (error == null) error = e;
+            } catch (InterruptedException e) {
+                if (error == null) error = new InterruptedIOException("Gravação do log interrompida");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(END);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            if (error != null) throw error;
+        }
+    }
+}
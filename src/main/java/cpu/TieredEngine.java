@@ -0,0 +1,140 @@
+package cpu;
+
+/**
+ * Motor em dois níveis ao lado da CPU: interpreta normalmente, conta quantas
+ * vezes cada bloco básico é iniciado e, passado o limiar, troca o bloco por
+ * uma classe JVM gerada pelo BlockCompiler.
+ *
+ * Um STORE que atinge um endereço coberto por código compilado descarta
+ * (desotimiza) os blocos afetados, que voltam a ser interpretados.
+ * Quem alterar cpu.mem por fora (ou chamar cpu.reset()) deve chamar invalidateAll().
+ * Funciona com cpu.setPredecode(true): as escritas dos blocos compilados
+ * também descartam as instruções pré-decodificadas afetadas.
+ * No modo estendido (CPU.wide()) tudo roda no interpretador: o BlockCompiler
+ * só gera código para endereços de 8 bits.
+ */
+public class TieredEngine {
+
+    public static final int DEFAULT_THRESHOLD = 50;
+
+    private static final class Entry {
+        final BlockCompiler.Block block;
+        final BlockCompiler.Compiled code;
+
+        Entry(BlockCompiler.Block block, BlockCompiler.Compiled code) {
+            this.block = block;
+            this.code = code;
+        }
+    }
+
+    public final CPU cpu;
+    private final int threshold;
+
+    private final Entry[] blocks = new Entry[256];   // indexado pelo endereço inicial
+    private final int[] hits = new int[256];         // entradas em cada líder de bloco
+    private final int[] cover = new int[256];        // quantos blocos compilados cobrem cada byte
+
+    /** Instruções executadas pela última chamada de run(). */
+    public long lastRunSteps;
+    /** Blocos compilados e desotimizados desde a criação (para diagnóstico). */
+    public int compiledCount;
+    public int deoptCount;
+
+    public TieredEngine(CPU cpu) { this(cpu, DEFAULT_THRESHOLD); }
+
+    public TieredEngine(CPU cpu, int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("Limiar inválido: " + threshold);
+        this.cpu = cpu;
+        this.threshold = threshold;
+    }
+
+    /** Descarta todo o código compilado e os contadores. */
+    public void invalidateAll() {
+        for (int i = 0; i < 256; i++) {
+            blocks[i] = null;
+            hits[i] = 0;
+            cover[i] = 0;
+        }
+    }
+
+    /**
+     * Executa até maxSteps instruções, alternando entre blocos compilados e o interpretador.
+     * @return o mesmo status que CPU.run()
+     */
+    public int run(long maxSteps) {
+        lastRunSteps = 0;
+        if (cpu.halted) return cpu.haltReason;
+        if (cpu.wide || cpu.isInstrumented() || (cpu.breakpoints != null && !cpu.breakpoints.isEmpty())) {
+            // Rastro, breakpoints, demais ganchos e o modo estendido só existem no interpretador
+            int st = cpu.run(maxSteps);
+            lastRunSteps = cpu.lastRunSteps;
+            return st;
+        }
+
+        final PagedMemory m = cpu.mem;
+        long done = 0;
+        boolean leader = true;
+
+        while (done < maxSteps) {
+            int pc = cpu.PC;
+            Entry e = blocks[pc];
+
+            if (e != null) {
+                int count = e.block.count();
+                long iters = (maxSteps - done) / count;
+                if (iters > 0) {
+                    int it = e.code.exec(cpu, (int) Math.min(iters, Integer.MAX_VALUE));
+                    done += (long) it * count;
+                    // O bloco escreve em mem sem passar pela CPU: avisa a pré-decodificação da CPU e desotimiza
+                    int[] st = e.block.stores;
+                    for (int i = 0; i < st.length; i++) {
+                        cpu.invalidateDecodedAt(st[i]);
+                        if (cover[st[i]] != 0) deopt(st[i]);
+                    }
+                    leader = true;
+                    continue;
+                }
+            } else if (leader && ++hits[pc] >= threshold) {
+                hits[pc] = 0;
+                if (compile(pc)) continue;
+            }
+
+            // Interpreta uma instrução
+            int op = m.get(pc);
+            int target = op == CPU.STORE ? m.get((pc + 1) & 0xFF) : -1;
+            int st = cpu.run(1);
+            done++;
+            if (target >= 0 && target < 256 && cover[target] != 0) deopt(target);
+            if (st != CPU.BUDGET) {
+                lastRunSteps = done;
+                return st;
+            }
+            leader = op == CPU.JMP || op == CPU.JZ || op == CPU.JN;
+        }
+
+        lastRunSteps = done;
+        return CPU.BUDGET;
+    }
+
+    private boolean compile(int pc) {
+        BlockCompiler.Block b = BlockCompiler.scan(cpu.mem, pc);
+        if (b == null) return false;
+        blocks[pc] = new Entry(b, BlockCompiler.compile(b));
+        for (int a = b.start; a < b.end; a++) cover[a]++;
+        compiledCount++;
+        return true;
+    }
+
+    // Descarta todos os blocos que cobrem o endereço escrito
+    private void deopt(int addr) {
+        for (int s = 0; s < 256; s++) {
+            Entry e = blocks[s];
+            if (e != null && addr >= e.block.start && addr < e.block.end) {
+                blocks[s] = null;
+                hits[s] = 0;
+                for (int a = e.block.start; a < e.block.end; a++) cover[a]--;
+                deoptCount++;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package cpu;
+
+/**
+ * Anel de tamanho fixo com um long por instrução executada.
+ * O texto de cada evento só é montado quando alguém pede (text()).
+ *
+ * Layout do evento: bits 0-15 PC, 16-23 opcode, 24-31 ACC, 32 Z, 33 N,
+ * 34 houve leitura, 35 houve escrita, 40-55 operando (16 bits, para o modo
+ * estendido). O endereço lido ou escrito é sempre o operando. No IN (que não
+ * tem operando nem acessa a memória) os bits 32-63 guardam o valor lido
+ * inteiro, sem máscara, como em step(); Z e N saem do ACC.
+ */
+public class TraceBuffer {
+    private final long[] events;
+    private int head;     // próxima posição a gravar
+    private long total;   // eventos gravados desde o último clear()
+
+    public TraceBuffer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacidade inválida: " + capacity);
+        events = new long[capacity];
+    }
+
+    public void add(int pc, int op, int arg, int acc, int z, int n, int readAddr, int writeAddr) {
+        long e = (pc & 0xFFFF)
+                | (op & 0xFF) << 16
+                | (long) (acc & 0xFF) << 24;
+        if (op == CPU.IN) {
+            e |= (long) arg << 32;
+        } else {
+            e |= (long) (z & 1) << 32 | (long) (n & 1) << 33 | (long) (arg & 0xFFFF) << 40;
+            if (readAddr >= 0) e |= 1L << 34;
+            if (writeAddr >= 0) e |= 1L << 35;
+        }
+        events[head] = e;
+        if (++head == events.length) head = 0;
+        total++;
+    }
+
+    public int capacity() { return events.length; }
+
+    /** Eventos disponíveis (no máximo capacity()). */
+    public int size() { return (int) Math.min(total, events.length); }
+
+    /** Eventos gravados desde o último clear(), inclusive os já sobrescritos. */
+    public long total() { return total; }
+
+    public void clear() { head = 0; total = 0; }
+
+    /** i-ésimo evento disponível, do mais antigo (0) ao mais recente (size() - 1). */
+    public long get(int i) {
+        int size = size();
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Evento inexistente: " + i);
+        int idx = head - size + i;
+        if (idx < 0) idx += events.length;
+        return events[idx];
+    }
+
+    /** Evento mais recente. */
+    public long last() { return get(size() - 1); }
+
+    public String text(int i) { return text(get(i)); }
+
+    public static int pc(long e)  { return (int) e & 0xFFFF; }
+    public static int op(long e)  { return (int) (e >>> 16) & 0xFF; }
+    public static int acc(long e) { return (int) (e >>> 24) & 0xFF; }
+    public static int z(long e)   { return op(e) == CPU.IN ? (acc(e) == 0 ? 1 : 0) : (int) (e >>> 32) & 1; }
+    public static int n(long e)   { return op(e) == CPU.IN ? acc(e) >>> 7 : (int) (e >>> 33) & 1; }
+
+    /** Operando da instrução; no IN, o valor lido. */
+    public static int arg(long e) {
+        return op(e) == CPU.IN ? (int) (e >>> 32) : (int) (e >>> 40) & 0xFFFF;
+    }
+
+    /** Endereço lido pela instrução, ou -1. */
+    public static int readAddr(long e) { return op(e) != CPU.IN && (e & 1L << 34) != 0 ? arg(e) : -1; }
+
+    /** Endereço escrito pela instrução, ou -1. */
+    public static int writeAddr(long e) { return op(e) != CPU.IN && (e & 1L << 35) != 0 ? arg(e) : -1; }
+
+    /** Mesmo texto que CPU.step() devolveria para a instrução. */
+    public static String text(long e) {
+        return CPU.describe(pc(e), op(e), arg(e), acc(e), z(e), n(e));
+    }
+}
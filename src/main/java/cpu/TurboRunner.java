@@ -0,0 +1,173 @@
+package cpu;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Modo turbo: uma thread própria executa a CPU pelo History (o "voltar" continua
+ * valendo depois) na velocidade máxima ou num ritmo fixo de instruções por
+ * segundo, e publica snapshots imutáveis no máximo frameRate vezes por segundo.
+ *
+ * Enquanto a thread existe, só ela toca na CPU e no histórico; os outros leem
+ * latest(). stop() espera a thread terminar e devolve a CPU a quem chamou.
+ *
+ * A thread nunca lê entrada: ela para antes de cada IN (CPU.INPUT, com
+ * cpu.stopAtInput), e quem controla o turbo executa o IN na própria thread
+ * (ex.: um diálogo na thread da interface) e inicia outro turbo. Assim stop()
+ * nunca espera por uma thread que está esperando quem chamou stop(). OUT
+ * continua sendo chamado pela thread do turbo.
+ */
+public class TurboRunner {
+
+    /** Execução interrompida por exceção (ex.: endereço inválido); a mensagem fica em error. */
+    public static final int ERROR = -1;
+
+    /** Instruções por fatia na velocidade máxima: entre fatias a thread publica e atende pause/stop. */
+    private static final long MAX_CHUNK = 1 << 16;
+
+    private final CPU cpu;
+    private final History history;
+    private final long frameNanos;
+    private final IntConsumer onFinish;
+    private final Object lock = new Object();
+
+    private Thread thread;
+    private volatile long rate;
+    private volatile boolean paused;
+    private volatile boolean stopping;
+    private volatile Snapshot latest;
+    private volatile long steps;
+    private volatile int status = CPU.RUNNING;
+
+    /** Mensagem da exceção quando status() == ERROR. */
+    public volatile String error;
+
+    /**
+     * @param onFinish chamado pela thread do turbo quando a CPU para sozinha
+     *                 (HALTED, INVALID, LOOP, BREAK, INPUT ou ERROR); não é chamado depois de stop()
+     */
+    public TurboRunner(CPU cpu, History history, int frameRate, IntConsumer onFinish) {
+        if (frameRate < 1) throw new IllegalArgumentException("Taxa de quadros inválida: " + frameRate);
+        this.cpu = cpu;
+        this.history = history;
+        this.frameNanos = 1_000_000_000L / frameRate;
+        this.onFinish = onFinish;
+    }
+
+    /** Instruções por segundo; 0 = sem limite. Pode mudar durante a execução. */
+    public void setRate(long instructionsPerSecond) {
+        if (instructionsPerSecond < 0) throw new IllegalArgumentException("Ritmo inválido: " + instructionsPerSecond);
+        rate = instructionsPerSecond;
+        synchronized (lock) { lock.notifyAll(); }
+    }
+
+    public void start() {
+        if (thread != null) throw new IllegalStateException("Turbo já iniciado");
+        latest = cpu.snapshot();
+        thread = new Thread(this::work, "turbo");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Para na próxima fronteira de fatia, publicando o estado em que parou. */
+    public void pause() { paused = true; }
+
+    public void resume() {
+        synchronized (lock) {
+            paused = false;
+            lock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() { return paused; }
+
+    /** Interrompe a execução e espera a thread terminar; depois disso a CPU volta a ser de quem chamou. */
+    public void stop() {
+        synchronized (lock) {
+            stopping = true;
+            lock.notifyAll();
+        }
+        if (thread == null) return;
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /** Último estado publicado (nunca null depois de start()). */
+    public Snapshot latest() { return latest; }
+
+    /** Instruções executadas até o último estado publicado. */
+    public long steps() { return steps; }
+
+    /** CPU.RUNNING enquanto executa; depois, como a execução terminou (CPU.BUDGET se foi por stop()). */
+    public int status() { return status; }
+
+    private void work() {
+        int st = CPU.BUDGET;
+        long done = 0;
+        long nextFrame = System.nanoTime() + frameNanos;
+        // Base do ritmo: em t0 já tinham sido executadas base instruções
+        long t0 = System.nanoTime(), base = 0, lastRate = rate;
+        cpu.stopAtInput = true;
+        try {
+            while (!stopping) {
+                if (paused) {
+                    publish(done);
+                    synchronized (lock) {
+                        while (paused && !stopping) lock.wait();
+                    }
+                    t0 = System.nanoTime();
+                    base = done;
+                    continue;
+                }
+                long r = rate;
+                if (r != lastRate) {
+                    t0 = System.nanoTime();
+                    base = done;
+                    lastRate = r;
+                }
+                // Com ritmo fixo, fatias de ~10 ms para não atrasar pause/stop
+                long chunk = r > 0 ? Math.max(1, Math.min(r / 100, MAX_CHUNK)) : MAX_CHUNK;
+                long before = history.position();
+                st = history.run(chunk);
+                done += history.position() - before;
+                if (st != CPU.BUDGET) break;
+
+                long now = System.nanoTime();
+                if (now >= nextFrame) {
+                    publish(done);
+                    nextFrame = now + frameNanos;
+                }
+                if (r > 0) {
+                    long due = t0 + (long) ((done - base) * (1e9 / r));
+                    synchronized (lock) {
+                        for (long wait = due - System.nanoTime(); wait > 0 && !stopping && !paused && rate == r;
+                             wait = due - System.nanoTime()) {
+                            lock.wait(wait / 1_000_000, (int) (wait % 1_000_000));
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Ninguém interrompe esta thread além de quem a encerra
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            st = ERROR;
+        } finally {
+            cpu.stopAtInput = false;
+        }
+        publish(done);
+        status = st;
+        if (st != CPU.BUDGET && onFinish != null) onFinish.accept(st);
+    }
+
+    private void publish(long done) {
+        steps = done;
+        latest = cpu.snapshot();
+    }
+}
@@ -0,0 +1,40 @@
+package cpu;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchCPUTest {
+
+    @Test
+    void lote_equivale_a_cpus_individuais() {
+        String prog = "IN\nSTORE A\nIN\nSTORE B\n" + CPUTest.DIVISAO.replace("LOAD Q\nHALT", "LOAD Q\nOUT\nLOAD A\nOUT\nHALT")
+                .replace("DEC 17", "DEC 0").replace("DEC 5", "DEC 0");
+        Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
+
+        int k = 300;
+        BatchCPU batch = new BatchCPU(k);
+        batch.load(out);
+        for (int i = 0; i < k; i++) batch.setInputs(i, i % 120, 1 + i % 7);
+        assertEquals(0, batch.run(100_000));
+
+        for (int i = 0; i < k; i++) {
+            CPU cpu = new CPU();
+            BufferedIO io = BufferedIO.of(i % 120, 1 + i % 7);
+            cpu.io = io;
+            cpu.load(out);
+            assertEquals(CPU.HALTED, cpu.run(100_000));
+
+            assertEquals(CPU.HALTED, batch.status(i));
+            assertEquals(cpu.lastRunSteps, batch.steps(i));
+            assertEquals(cpu.PC, batch.pc(i));
+            assertEquals(cpu.ACC, batch.acc(i));
+            assertEquals(cpu.Z, batch.z(i));
+            assertEquals(cpu.N, batch.n(i));
+            assertArrayEquals(io.outputs(), batch.outputs(i));
+
+            CPU copy = new CPU();
+            batch.copyTo(i, copy);
+            assertArrayEquals(cpu.mem.toArray(), copy.mem.toArray());
+        }
+    }
+}
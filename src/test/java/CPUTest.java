@@ -4,6 +4,22 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CPUTest {
+    // Divisão 17 / 5 por subtrações sucessivas (quociente em Q, resto em A)
+    static final String DIVISAO =
+            "LOOP:\n" +
+            "LOAD A\n" +
+            "SUB B\n" +
+            "JN FIM\n" +
+            "STORE A\n" +
+            "LOAD Q\n" +
+            "ADDI 1\n" +
+            "STORE Q\n" +
+            "JMP LOOP\n" +
+            "FIM:\n" +
+            "LOAD Q\n" +
+            "HALT\n" +
+            "A, DEC 17\nB, DEC 5\nQ, DEC 0";
+
     @Test
     void soma_e_store() {
         CPU cpu = new CPU();
@@ -13,8 +29,517 @@ public class CPUTest {
                 "HALT\n";
 
         int[] bin = Assembler.assemble(prog);
-        for (int i = 0; i < bin.length; i++) cpu.mem[i] = bin[i];
+        for (int i = 0; i < bin.length; i++) cpu.mem.set(i, bin[i]);
         while (!cpu.halted) cpu.step();
-        assertEquals(8, cpu.mem[10]);
+        assertEquals(8, cpu.mem.get(10));
+    }
+
+    @Test
+    void run_equivale_a_step() {
+        String prog = DIVISAO;
+        Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
+
+        CPU a = new CPU();
+        CPU b = new CPU();
+        a.load(out);
+        b.load(out);
+
+        while (!a.halted) a.step();
+        assertEquals(CPU.HALTED, b.run(1_000_000));
+
+        assertEquals(3, b.ACC);
+        assertEquals(a.PC, b.PC);
+        assertEquals(a.ACC, b.ACC);
+        assertEquals(a.Z, b.Z);
+        assertEquals(a.N, b.N);
+        assertArrayEquals(a.mem.toArray(), b.mem.toArray());
+    }
+
+    @Test
+    void run_orcamento_e_opcode_invalido() {
+        CPU cpu = new CPU();
+        cpu.mem.set(0, CPU.JMP); cpu.mem.set(1, 0);
+        assertEquals(CPU.BUDGET, cpu.run(1000));
+        assertEquals(1000, cpu.lastRunSteps);
+        assertFalse(cpu.halted);
+
+        cpu.reset();
+        cpu.mem.set(0, 0x77);
+        assertEquals(CPU.INVALID, cpu.stepQuiet());
+        assertTrue(cpu.halted);
+        assertEquals(CPU.INVALID, cpu.run(10));
+    }
+
+    @Test
+    void predecode_invalida_codigo_automodificavel() {
+        // Na segunda volta o operando do ADDI (endereço 3) é reescrito para 5
+        String prog = "INICIO:\n" +
+                "LOADI 10\n" +
+                "ADDI 0\n" +
+                "STORE R\n" +
+                "LOAD F\n" +
+                "JZ PATCH\n" +
+                "HALT\n" +
+                "PATCH:\n" +
+                "LOADI 1\n" +
+                "STORE F\n" +
+                "LOADI 5\n" +
+                "STORE 3\n" +
+                "JMP INICIO\n" +
+                "R, DEC 0\nF, DEC 0";
+        Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
+
+        CPU cpu = new CPU();
+        cpu.setPredecode(true);
+        cpu.load(out);
+        assertEquals(CPU.HALTED, cpu.run(1000));
+        assertEquals(15, cpu.mem.get(200));
+        assertEquals(CPU.HALT, cpu.IR);
+
+        cpu.reset();
+        cpu.load(Assembler.assembleWithVars(DIVISAO, 200));
+        assertEquals(CPU.BUDGET, cpu.run(2));
+        assertEquals(CPU.SUBM, cpu.IR);
+        assertEquals(CPU.HALTED, cpu.run(1000));
+        assertEquals(3, cpu.ACC);
+    }
+
+    @Test
+    void in_out_com_buffer() {
+        String prog = "IN\nSTORE A\nIN\nSTORE B\n" + DIVISAO.replace("LOAD Q\nHALT", "LOAD Q\nOUT\nLOAD A\nOUT\nHALT")
+                .replace("DEC 17", "DEC 0").replace("DEC 5", "DEC 0");
+        Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
+
+        CPU cpu = new CPU();
+        BufferedIO io = BufferedIO.of(47, 6);
+        cpu.io = io;
+        cpu.load(out);
+        assertEquals(CPU.HALTED, cpu.run(10_000));
+        assertArrayEquals(new int[]{7, 5}, io.outputs());
+        assertEquals(0, io.missingInputs);
+
+        BufferedIO file = BufferedIO.fromReader(new java.io.StringReader("12 -3\n  40"));
+        assertEquals(12, file.read());
+        assertEquals(-3, file.read());
+        assertEquals(40, file.read());
+        assertEquals(0, file.read());
+        assertEquals(1, file.missingInputs);
+
+        BufferedIO glued = BufferedIO.fromReader(new java.io.StringReader("7\t-2 5-3"));
+        assertThrows(java.io.UncheckedIOException.class, glued::read);
+    }
+
+    @Test
+    void rastro_binario_reproduz_o_log() {
+        Assembler.AsmOut out = Assembler.assembleWithVars(DIVISAO, 200);
+        CPU a = new CPU();
+        a.load(out);
+        java.util.List<String> logs = new java.util.ArrayList<>();
+        while (!a.halted) logs.add(a.step());
+
+        CPU b = new CPU();
+        b.trace = new TraceBuffer(8);
+        b.load(out);
+        assertEquals(CPU.HALTED, b.run(10_000));
+        assertEquals(logs.size(), b.trace.total());
+        assertEquals(8, b.trace.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(logs.get(logs.size() - 8 + i), b.trace.text(i));
+        }
+
+        // LOAD A (1ª instrução) lê 200; STORE A (4ª) escreve em 200
+        b.trace.clear();
+        b.reset();
+        b.load(out);
+        b.run(5);
+        assertEquals(200, TraceBuffer.readAddr(b.trace.get(0)));
+        assertEquals(-1, TraceBuffer.writeAddr(b.trace.get(0)));
+        assertEquals(200, TraceBuffer.writeAddr(b.trace.get(3)));
+
+        // IN fora de 0..255: o rastro mostra o valor lido, como step()
+        Assembler.AsmOut in = Assembler.assembleWithVars("IN\nIN\nHALT", 200);
+        CPU c = new CPU();
+        c.io = BufferedIO.of(300, -5);
+        c.load(in);
+        String first = c.step(), second = c.step();
+        b.reset();
+        b.trace.clear();
+        b.io = BufferedIO.of(300, -5);
+        b.load(in);
+        b.run(2);
+        assertEquals(first, b.trace.text(0));
+        assertEquals(second, b.trace.text(1));
+        assertTrue(first.endsWith("Leu 300"));
+    }
+
+    @Test
+    void snapshot_e_fork_compartilham_paginas() {
+        CPU cpu = new CPU();
+        cpu.load(Assembler.assembleWithVars(DIVISAO, 200));
+        Snapshot s0 = cpu.snapshot();
+
+        CPU child = cpu.fork();
+        // fork() e snapshot() não copiam a memória: todas as páginas são as mesmas
+        assertEquals(Snapshot.PAGES, child.snapshot().sharedPages(s0));
+        assertEquals(CPU.HALTED, child.run(10_000));
+        assertEquals(3, child.ACC);
+        // O pai não é afetado pelo filho
+        assertEquals(0, cpu.PC);
+        assertEquals(17, cpu.mem.get(200));
+
+        // Só a página dos dados (200..215) mudou
+        Snapshot s1 = child.snapshot();
+        assertEquals(Snapshot.PAGES - 1, s1.sharedPages(s0));
+        assertEquals(2, s1.mem(200));
+        assertEquals(17, s0.mem(200));
+
+        child.restore(s0);
+        assertEquals(CPU.HALTED, child.run(10_000));
+        assertEquals(3, child.ACC);
+
+        // Escrever numa página compartilhada copia só ela, nos dois sentidos
+        CPU other = cpu.fork();
+        cpu.mem.set(200, 99);
+        assertEquals(17, other.mem.get(200));
+        assertEquals(17, s0.mem(200));
+        other.mem.set(201, 7);
+        assertEquals(5, cpu.mem.get(201));
+        assertEquals(Snapshot.PAGES - 1, other.snapshot().sharedPages(s0));
+    }
+
+    @Test
+    void contadores_de_desempenho() {
+        CPU cpu = new CPU();
+        cpu.load(Assembler.assembleWithVars(DIVISAO, 200));
+        cpu.counters = new PerfCounters();
+        assertEquals(CPU.HALTED, cpu.run(10_000));
+
+        PerfCounters c = cpu.counters.snapshot();
+        cpu.counters.reset();
+        assertEquals(0, cpu.counters.instructions);
+
+        // 17 / 5: 3 voltas completas + a volta que sai pelo JN
+        assertEquals(cpu.lastRunSteps, c.instructions);
+        assertEquals(4, c.retired[CPU.JN]);
+        assertEquals(1, c.jnTaken);
+        assertEquals(3, c.jnNotTaken);
+        assertEquals(3, c.writes[200]);
+        assertEquals(3, c.writes[202]);
+        assertEquals(4, c.reads[201]);
+        assertEquals(1, c.retired[CPU.HALT]);
+    }
+
+    @Test
+    void detecta_laco_infinito() {
+        // Contador de 8 bits sem saída: o estado completo se repete a cada 256 voltas
+        String prog = "LOOP:\nLOAD X\nADDI 1\nSTORE X\nJMP LOOP\nX, DEC 0";
+        CPU cpu = new CPU();
+        cpu.loopDetector = new LoopDetector(cpu);
+        cpu.load(Assembler.assembleWithVars(prog, 200));
+        assertEquals(CPU.LOOP, cpu.run(1_000_000));
+        assertEquals(4 * 256, cpu.loopDetector.period);
+        assertEquals(0, cpu.loopDetector.loopMinPC);
+        assertEquals(6, cpu.loopDetector.loopMaxPC);
+        assertTrue(cpu.lastRunSteps < 10_000);
+
+        // Programa que termina não é acusado e dá o mesmo resultado
+        CPU div = new CPU();
+        div.loopDetector = new LoopDetector(div);
+        div.load(Assembler.assembleWithVars(DIVISAO, 200));
+        assertEquals(CPU.HALTED, div.run(1_000_000));
+        assertEquals(3, div.ACC);
+
+        // Com IN no laço o futuro depende da entrada: nada é comprovado
+        CPU in = new CPU();
+        in.loopDetector = new LoopDetector(in);
+        in.io = BufferedIO.of(new int[0]);
+        in.load(Assembler.assembleWithVars("LOOP:\nIN\nJMP LOOP", 200));
+        assertEquals(CPU.BUDGET, in.run(10_000));
+        assertFalse(in.loopDetector.detected);
+    }
+
+    @Test
+    void modo_estendido_de_16_bits() {
+        CPU w = CPU.wide();
+        w.load(Assembler.assembleWide(DIVISAO, 40000));
+        assertEquals(CPU.HALTED, w.run(10_000));
+        assertEquals(3, w.ACC);
+        assertEquals(3, w.mem.get(40002));
+        assertEquals(2, w.mem.get(40000));
+
+        // Código maior que 256 bytes só cabe no modo estendido
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 200; i++) big.append("ADDI 1\n");
+        big.append("STORE X\nHALT\nX, DEC 0");
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> Assembler.assembleWithVars(big.toString(), 200));
+        assertEquals("Código excede 256 bytes.", ex.getMessage());
+        w.load(Assembler.assembleWide(big.toString(), 1000));
+        assertEquals(CPU.HALTED, w.run(10_000));
+        assertEquals(200, w.mem.get(1000));
+
+        // Variáveis fora da memória são erro de montagem (ou de carga, numa memória menor)
+        Assembler.AsmException fora = assertThrows(Assembler.AsmException.class,
+                () -> Assembler.assembleWide("HALT\nX, DEC 1\nY, DEC 2", 65535));
+        assertEquals(2, fora.line);
+        Assembler.AsmOut alto = Assembler.assembleWide("HALT\nX, DEC 1", 5000);
+        assertThrows(IllegalArgumentException.class, () -> CPU.wide(4096).load(alto));
+
+        // reset() limpa a memória sem percorrê-la
+        Snapshot antes = w.snapshot();
+        w.reset();
+        assertEquals(0, w.mem.get(1000));
+        assertEquals(0, w.mem.get(0));
+        w.mem.set(1001, 7);
+        assertEquals(0, w.mem.get(1000));
+        assertEquals(7, w.mem.get(1001));
+        assertEquals(200, antes.mem(1000));
+        w.restore(antes);
+        assertEquals(200, w.mem.get(1000));
+        assertEquals(0, w.mem.get(1001));
+        assertThrows(IllegalArgumentException.class, () -> new CPU().restore(antes));
+    }
+
+    @Test
+    void modo_estendido_com_os_mesmos_ganchos() {
+        // Cada caminho (instrumentado, pré-decodificado, rápido) dá o mesmo resultado
+        String src = DIVISAO.replace("HALT", "OUT\nHALT");
+        for (int mode = 0; mode < 3; mode++) {
+            CPU w = CPU.wide();
+            if (mode == 0) w.trace = new TraceBuffer(64);
+            if (mode == 1) w.setPredecode(true);
+            w.load(Assembler.assembleWide(src, 40000));
+            assertEquals(CPU.HALTED, w.run(10_000), "modo " + mode);
+            assertEquals(3, w.mem.get(40002), "modo " + mode);
+        }
+
+        CPU w = CPU.wide();
+        w.trace = new TraceBuffer(64);
+        w.counters = new PerfCounters(w.mem.size());
+        w.profiler = new Profiler(w.mem.size());
+        w.load(Assembler.assembleWide("LOADI 5\nSTORE X\nHALT\nX, DEC 0", 40000));
+        assertEquals(CPU.HALTED, w.run(100));
+        assertEquals(40000, TraceBuffer.writeAddr(w.trace.get(1)));
+        assertEquals("PC=002 | IR=0x03 | ACC=5 | Z=0 | N=0 :: STORE [40000] <- 5", w.trace.text(1));
+        assertEquals(1, w.counters.writes[40000]);
+        assertEquals(2 + 3 + 1 + 1, w.counters.cycles);
+        assertEquals(1, w.profiler.hits[2]);
+
+        // Profiler de 256 endereços não serve para 64 KiB
+        w.profiler = new Profiler();
+        w.reset();
+        assertThrows(IllegalStateException.class, () -> w.run(1));
+
+        // Laço infinito e breakpoints em endereços altos
+        CPU l = CPU.wide();
+        l.loopDetector = new LoopDetector(l);
+        l.load(Assembler.assembleWide("LOOP:\nLOADI 1\nSTORE X\nJMP LOOP\nX, DEC 0", 50000));
+        assertEquals(CPU.LOOP, l.run(10_000));
+        assertEquals(0, l.loopDetector.loopMinPC);
+        assertEquals(5, l.loopDetector.loopMaxPC);
+
+        CPU b = CPU.wide();
+        b.breakpoints = new Breakpoints();
+        b.breakpoints.set(Breakpoints.WRITE, 50000, true);
+        b.load(Assembler.assembleWide("LOADI 1\nSTORE X\nHALT\nX, DEC 0", 50000));
+        assertEquals(CPU.BREAK, b.run(100));
+        assertEquals(50000, b.breakpoints.hitAddr);
+        assertEquals(CPU.HALTED, b.run(100));
+
+        // fork() copia só as páginas escritas
+        CPU f = b.fork();
+        f.mem.set(60000, 9);
+        assertEquals(0, b.mem.get(60000));
+        assertEquals(1, f.mem.get(50000));
+    }
+
+    @Test
+    void montador_resolve_rotulos_adiante_e_mantem_os_erros() {
+        Assembler.AsmOut out = Assembler.assembleWithVars("JMP FIM\nLOAD x\nFIM:\nHALT\nX, DEC 7", 200);
+        assertArrayEquals(new int[]{CPU.JMP, 4, CPU.LOADM, 200, CPU.HALT}, out.code);
+        assertEquals(Integer.valueOf(4), out.symbols.get("FIM"));
+        assertEquals(Integer.valueOf(3), out.debugMap.get(4));
+
+        // Os mapas da saída continuam editáveis por quem monta o programa
+        out.dataInits.put(100, 9);
+        out.dataInits.put(10, 1);
+        assertEquals(Integer.valueOf(7), out.dataInits.put(200, 8));
+        assertEquals(java.util.Arrays.asList(10, 100, 200), new java.util.ArrayList<>(out.dataInits.keySet()));
+        assertEquals(Integer.valueOf(1), out.dataInits.remove(10));
+        out.debugMap.clear();
+        assertTrue(out.debugMap.isEmpty());
+
+        // Erros da "segunda passada" saem pela linha mais acima; duplicados têm prioridade
+        assertEquals("Símbolo não encontrado: nada",
+                assertThrows(IllegalArgumentException.class, () -> Assembler.assemble("JMP nada\nFOO")).getMessage());
+        assertEquals("Mnemônico inválido: FOO",
+                assertThrows(IllegalArgumentException.class, () -> Assembler.assemble("foo\nJMP nada")).getMessage());
+        assertEquals("Símbolo duplicado: A",
+                assertThrows(IllegalArgumentException.class, () -> Assembler.assemble("FOO\nA:\na:")).getMessage());
+        assertEquals("Falta operando em: LOAD",
+                assertThrows(IllegalArgumentException.class, () -> Assembler.assemble("LOAD ; sem nada")).getMessage());
+        assertEquals("Endereço fora de 0..255: 256",
+                assertThrows(IllegalArgumentException.class, () -> Assembler.assemble("LOADI 256")).getMessage());
+    }
+
+    @Test
+    void montagem_incremental_so_rele_linhas_alteradas() {
+        Assembler.Incremental inc = new Assembler.Incremental();
+        Assembler.AsmOut a = inc.assemble(DIVISAO, 200);
+        assertEquals(14, inc.lastLexed); // 15 linhas, "LOAD Q" repetida
+
+        String editado = DIVISAO.replace("ADDI 1", "ADDI 2");
+        Assembler.AsmOut b = inc.assemble(editado, 200);
+        assertEquals(1, inc.lastLexed);
+        assertArrayEquals(Assembler.assembleWithVars(editado, 200).code, b.code);
+        assertEquals(a.debugMap, b.debugMap);
+
+        Assembler.AsmException ex = assertThrows(Assembler.AsmException.class,
+                () -> inc.assemble(editado.replace("JN FIM", "JN SAIDA"), 200));
+        assertEquals("Símbolo não encontrado: SAIDA", ex.getMessage());
+        assertEquals(3, ex.line);
+    }
+
+    @Test
+    void breakpoints_e_watchpoints_param_em_run_e_step() {
+        Assembler.AsmOut out = Assembler.assembleWithVars(DIVISAO, 200);
+        int fim = out.symbols.get("FIM"), q = out.symbols.get("Q");
+        CPU cpu = new CPU();
+        cpu.load(out);
+        Breakpoints bp = new Breakpoints();
+        cpu.breakpoints = bp;
+        assertFalse(cpu.isInstrumented());   // vazio: caminho rápido
+
+        bp.set(Breakpoints.WRITE, q, true);
+        assertEquals(CPU.BREAK, cpu.run(1000));
+        assertEquals(Breakpoints.WRITE, bp.hitKind);
+        assertEquals(1, cpu.mem.get(q));
+        assertFalse(cpu.halted);
+
+        bp.set(Breakpoints.WRITE, q, false);
+        assertTrue(bp.setLine(out.debugMap, out.debugMap.get(fim), true));
+        assertEquals(CPU.BREAK, new TieredEngine(cpu).run(1000));
+        assertEquals(Breakpoints.EXEC, bp.hitKind);
+        assertEquals(fim, cpu.PC);
+        assertEquals(3, cpu.mem.get(q));
+
+        // Continuar executa a instrução marcada; o passo a passo também para
+        bp.set(Breakpoints.READ, q, true);
+        assertEquals(CPU.BREAK, cpu.stepQuiet());
+        assertEquals(Breakpoints.READ, bp.hitKind);
+        assertEquals(CPU.HALTED, new History(cpu).run(1000));
+        assertEquals(3, cpu.ACC);
+    }
+
+    @Test
+    void breakpoint_para_antes_da_instrucao_e_continua_dela() {
+        Assembler.AsmOut out = Assembler.assembleWithVars(DIVISAO, 200);
+        int q = out.symbols.get("Q");
+        // Caminho rápido, pré-decodificado e instrumentado
+        for (int mode = 0; mode < 3; mode++) {
+            CPU cpu = new CPU();
+            cpu.setPredecode(mode == 1);
+            cpu.trace = mode == 2 ? new TraceBuffer(64) : null;
+            cpu.load(out);
+            Breakpoints bp = new Breakpoints();
+            cpu.breakpoints = bp;
+            bp.set(Breakpoints.EXEC, 0, true);
+            assertEquals(mode == 2, cpu.isInstrumented());   // só EXEC: continua no caminho rápido
+
+            // A primeira instrução depois do load também para, sem executar nada
+            assertEquals(CPU.BREAK, cpu.run(1000));
+            assertEquals(0, cpu.lastRunSteps);
+            assertEquals(0, cpu.PC);
+
+            // Continuar executa a instrução marcada e para na volta seguinte do laço
+            assertEquals(CPU.BREAK, cpu.run(1000));
+            assertEquals(8, cpu.lastRunSteps);
+            assertEquals(0, cpu.PC);
+            assertEquals(1, cpu.mem.get(q));
+
+            // O passo a passo executa a instrução marcada
+            assertEquals(CPU.RUNNING, cpu.stepQuiet());
+            assertEquals(2, cpu.PC);
+
+            // Depois de reset/load a marca volta a valer na primeira instrução
+            cpu.load(out);
+            assertEquals(CPU.BREAK, cpu.run(1000));
+            assertEquals(0, cpu.lastRunSteps);
+
+            bp.set(Breakpoints.EXEC, 0, false);
+            assertEquals(CPU.HALTED, cpu.run(1000));
+            assertEquals(3, cpu.ACC);
+        }
+    }
+
+    @Test
+    void breakpoint_condicional_e_contagem_de_acertos() {
+        String prog = DIVISAO.replace("DEC 17", "DEC 100").replace("DEC 5", "DEC 3");
+        Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
+        int q = out.symbols.get("Q");
+        CPU cpu = new CPU();
+        cpu.load(out);
+        Breakpoints bp = new Breakpoints();
+        cpu.breakpoints = bp;
+
+        // LOOP é o endereço 0: para na primeira volta em que Q passa de 10
+        Condition c = Condition.compile("mem[q] > 10 && (ACC - 1) != mem[Q] + 0x10 && !Z", out.symbols);
+        bp.set(Breakpoints.EXEC, 0, true);
+        bp.setCondition(Breakpoints.EXEC, 0, c);
+        assertEquals(CPU.BREAK, cpu.run(100_000));
+        assertEquals(11, cpu.mem.get(q));
+        assertEquals(1, c.hits);
+
+        Condition depois = Condition.compile("after 5 hits", out.symbols);
+        bp.setCondition(Breakpoints.EXEC, 0, depois);
+        History h = new History(cpu);
+        assertEquals(CPU.BREAK, h.run(100_000));
+        assertEquals(16, cpu.mem.get(q));
+        assertTrue(h.stepBack());            // reexecutar não conta acertos
+        assertEquals(5, depois.hits);
+
+        assertEquals("Condição inválida (coluna 5): símbolo não encontrado: W",
+                assertThrows(IllegalArgumentException.class, () -> Condition.compile("mem[W] == 1", out.symbols)).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Condition.compile("ACC = 1", out.symbols));
+        assertThrows(IllegalArgumentException.class, () -> Condition.compile("after 0 vezes", out.symbols));
+        Condition tres = Condition.compile("ACC == 0x10 || -PC < -2 após 3 vezes", out.symbols);
+        cpu.ACC = 16;
+        assertFalse(tres.test(cpu));
+        assertFalse(tres.test(cpu));
+        cpu.ACC = 0;
+        cpu.PC = 1;
+        assertFalse(tres.test(cpu));
+        cpu.PC = 3;
+        assertTrue(tres.test(cpu));
+    }
+
+    @Test
+    void perfil_soma_execucoes_por_linha() {
+        Assembler.AsmOut out = Assembler.assembleWithVars(DIVISAO, 200);
+        CPU cpu = new CPU();
+        cpu.load(out);
+        Profiler prof = new Profiler();
+        cpu.profiler = prof;
+        History h = new History(cpu);
+        assertEquals(CPU.HALTED, h.run(1000));
+        assertEquals(h.position(), prof.total);
+
+        // 17 / 5: o corpo do laço roda 3 vezes, o teste (LOAD A, SUB B, JN FIM) 4
+        long[] perLine = prof.byLine(out.debugMap, 12);
+        assertEquals(4, perLine[1]);
+        assertEquals(3, perLine[4]);
+        assertEquals(1, perLine[10]);
+        assertEquals(0, perLine[0]);
+        assertEquals(prof.total, java.util.Arrays.stream(perLine).sum());
+
+        java.util.List<Profiler.Line> top = prof.lines(out.debugMap);
+        assertEquals(1, top.get(0).line);
+        assertEquals(100.0 * 4 / prof.total, top.get(0).percent, 1e-9);
+        assertEquals(100.0, top.stream().mapToDouble(l -> l.percent).sum(), 1e-9);
+
+        // Voltar no tempo reexecuta sem contar de novo
+        long total = prof.total;
+        h.seek(1);
+        assertEquals(total, prof.total);
     }
 }
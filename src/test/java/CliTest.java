@@ -0,0 +1,138 @@
+package cpu;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CliTest {
+
+    private static final String SOMA = "IN\nSTORE A\nIN\nADD A\nOUT\nHALT\nA, DEC 0";
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int cli(String stdin, String... args) throws Exception {
+        return Cli.run(args, new ByteArrayInputStream(stdin.getBytes(StandardCharsets.UTF_8)),
+                new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+    }
+
+    private String out() { return new String(out.toByteArray(), StandardCharsets.UTF_8); }
+
+    @Test
+    void executa_com_entradas_dos_argumentos_e_do_stdin(@TempDir Path dir) throws Exception {
+        Path prog = dir.resolve("soma.asm");
+        Files.write(prog, SOMA.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Cli.EXIT_HALT, cli("", prog.toString(), "2", "3"));
+        assertTrue(out().startsWith("5\n# HALTED após 6 passos"), out());
+
+        out.reset();
+        assertEquals(Cli.EXIT_HALT, cli("7 8\n", "--json", "--stdin", prog.toString()));
+        assertTrue(out().startsWith("{\"status\":\"HALTED\",\"steps\":6,"), out());
+        assertTrue(out().contains("\"outputs\":[15]"), out());
+    }
+
+    @Test
+    void codigos_de_saida(@TempDir Path dir) throws Exception {
+        Path laco = dir.resolve("laco.asm");
+        Files.write(laco, "LOOP:\nJMP LOOP".getBytes(StandardCharsets.UTF_8));
+        Path ruim = dir.resolve("ruim.asm");
+        Files.write(ruim, "FOO 1".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Cli.EXIT_BUDGET, cli("", "--max-steps", "100", laco.toString()));
+        assertEquals(Cli.EXIT_LOOP, cli("", "--detect-loops", laco.toString()));
+        assertEquals(Cli.EXIT_ERROR, cli("", ruim.toString()));
+        assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8).contains("Mnemônico inválido: FOO"));
+        assertEquals(Cli.EXIT_USAGE, cli("", "--max-steps"));
+        assertEquals(Cli.EXIT_USAGE, cli("", "--xyz", laco.toString()));
+        assertEquals(Cli.EXIT_USAGE, cli("1 2", "--stdin", laco.toString(), "3"));
+    }
+
+    @Test
+    void imagem_binaria(@TempDir Path dir) throws Exception {
+        Path prog = dir.resolve("div.asm");
+        Path img = dir.resolve("div.img");
+        Files.write(prog, CPUTest.DIVISAO.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Cli.EXIT_HALT, cli("", "--save-image", img.toString(), prog.toString()));
+        String fromSource = out();
+        out.reset();
+        assertEquals(Cli.EXIT_HALT, cli("", img.toString()));
+        assertEquals(fromSource, out());
+
+        Assembler.AsmOut a = Assembler.assembleWithVars(CPUTest.DIVISAO, 200);
+        Assembler.AsmOut b = ProgramImage.read(img);
+        assertArrayEquals(a.code, b.code);
+        assertEquals(a.dataInits, b.dataInits);
+        assertEquals(a.debugMap, b.debugMap);
+        assertEquals(a.symbols, b.symbols);
+        assertEquals(Integer.valueOf(202), b.symbols.get("Q"));
+
+        CPU cpu = new CPU();
+        ProgramImage.load(img, cpu);
+        assertEquals(CPU.HALTED, cpu.run(10_000));
+        assertEquals(3, cpu.ACC);
+
+        Path ruim = dir.resolve("ruim.img");
+        Files.write(ruim, new byte[]{1, 2, 3});
+        assertEquals(Cli.EXIT_ERROR, cli("", ruim.toString()));
+
+        // Tamanhos corrompidos ou arquivo cortado: sempre IOException, e a CPU fica como estava
+        byte[] ok = Files.readAllBytes(img);
+        byte[][] corrompidas = {
+                patchInt(ok, 8, -1),                       // tamanho do código negativo
+                patchInt(ok, 8, Integer.MAX_VALUE),        // código maior que o arquivo
+                patchInt(ok, 12 + a.code.length, 1 << 30), // dataInits além do arquivo
+                java.util.Arrays.copyOf(ok, ok.length - 3) // símbolos cortados
+        };
+        for (int k = 0; k < corrompidas.length; k++) {
+            Files.write(ruim, corrompidas[k]);
+            assertThrows(java.io.IOException.class, () -> ProgramImage.read(ruim));
+            if (k == 3) continue;   // load() não lê os símbolos
+            assertThrows(java.io.IOException.class, () -> ProgramImage.load(ruim, cpu));
+            assertEquals(3, cpu.ACC);
+            assertEquals(Cli.EXIT_ERROR, cli("", ruim.toString()));
+        }
+    }
+
+    private static byte[] patchInt(byte[] image, int at, int value) {
+        byte[] b = image.clone();
+        java.nio.ByteBuffer.wrap(b).order(java.nio.ByteOrder.LITTLE_ENDIAN).putInt(at, value);
+        return b;
+    }
+
+    @Test
+    void modo_estendido(@TempDir Path dir) throws Exception {
+        // Mais de 256 bytes de código: só monta com --wide
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 200; i++) big.append("ADDI 1\n");
+        big.append("STORE X\nLOAD X\nOUT\nHALT\nX, DEC 0");
+        Path prog = dir.resolve("grande.asm");
+        Path img = dir.resolve("grande.img");
+        Files.write(prog, big.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Cli.EXIT_ERROR, cli("", prog.toString()));
+        assertEquals(Cli.EXIT_HALT, cli("", "--wide", "--save-image", img.toString(), prog.toString()));
+        assertTrue(out().startsWith("200\n# HALTED após 204 passos"), out());
+
+        // A imagem lembra o modo
+        String fromSource = out();
+        out.reset();
+        assertTrue(ProgramImage.isWide(img));
+        assertEquals(Cli.EXIT_HALT, cli("", img.toString()));
+        assertEquals(fromSource, out());
+        assertThrows(java.io.IOException.class, () -> ProgramImage.load(img, new CPU()));
+
+        out.reset();
+        assertEquals(Cli.EXIT_HALT, cli("", "--wide", "--detect-loops", prog.toString()));
+        assertEquals(fromSource, out());
+    }
+}
@@ -0,0 +1,74 @@
+package cpu;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HarnessTest {
+
+    @Test
+    void todas_as_combinacoes_chegam_ao_callback() {
+        String div = "IN\nSTORE A\nIN\nSTORE B\n" + CPUTest.DIVISAO.replace("LOAD Q\nHALT", "LOAD Q\nOUT\nHALT")
+                .replace("DEC 17", "DEC 0").replace("DEC 5", "DEC 0");
+        List<Assembler.AsmOut> programs = Arrays.asList(
+                Assembler.assembleWithVars(div, 200),
+                Assembler.assembleWithVars("LOOP:\nJMP LOOP", 200));
+        List<int[]> inputs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) inputs.add(new int[]{i, 1 + i % 4});
+
+        ConcurrentLinkedQueue<Harness.Result> results = new ConcurrentLinkedQueue<>();
+        new Harness(new ForkJoinPool(4), 10_000, true).run(programs, inputs, results::add);
+
+        assertEquals(100, results.size());
+        for (Harness.Result r : results) {
+            if (r.program == 0) {
+                assertEquals(CPU.HALTED, r.status);
+                assertArrayEquals(new int[]{r.input / (1 + r.input % 4)}, r.outputs);
+            } else {
+                assertEquals(CPU.BUDGET, r.status);
+                assertEquals(10_000, r.steps);
+            }
+        }
+    }
+
+    @Test
+    void cache_reaproveita_resultados(@TempDir Path dir) {
+        Assembler.AsmOut prog = Assembler.assembleWithVars(CPUTest.DIVISAO, 200);
+        List<int[]> inputs = Arrays.asList(new int[0], new int[0], new int[0]);
+        ResultCache cache = new ResultCache(16, dir);
+        Harness h = new Harness(new ForkJoinPool(1), 10_000, false);
+        h.setCache(cache);
+
+        ConcurrentLinkedQueue<Harness.Result> results = new ConcurrentLinkedQueue<>();
+        h.run(Arrays.asList(prog), inputs, results::add);
+        assertEquals(3, results.size());
+        assertEquals(1, cache.misses);
+        assertEquals(2, cache.hits);
+        for (Harness.Result r : results) {
+            assertEquals(CPU.HALTED, r.status);
+            assertEquals(3, r.mem[202]);
+        }
+
+        // Outra instância lê do disco e restaura o estado final na CPU
+        ResultCache fromDisk = new ResultCache(16, dir);
+        CPU cpu = new CPU();
+        ResultCache.Entry e = fromDisk.run(cpu, prog, new int[0], 10_000);
+        assertEquals(1, fromDisk.hits);
+        assertEquals(CPU.HALTED, e.status);
+        assertTrue(cpu.halted);
+        assertEquals(3, cpu.ACC);
+        assertEquals(results.peek().steps, e.steps);
+
+        // Entradas ou orçamento diferentes são outra chave
+        assertNotEquals(ResultCache.key(prog, new int[0], 10_000), ResultCache.key(prog, new int[]{1}, 10_000));
+        assertNotEquals(ResultCache.key(prog, new int[0], 10_000), ResultCache.key(prog, new int[0], 10));
+    }
+}
@@ -0,0 +1,104 @@
+package cpu;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryTest {
+
+    @Test
+    void voltar_reproduz_os_estados_e_as_entradas() {
+        String prog = "IN\nSTORE A\nIN\nSTORE B\n" + CPUTest.DIVISAO.replace("DEC 17", "DEC 0").replace("DEC 5", "DEC 0");
+        CPU cpu = new CPU();
+        cpu.load(Assembler.assembleWithVars(prog, 200));
+        BufferedIO io = BufferedIO.of(100, 3);
+        cpu.io = io;
+        History h = new History(cpu, 8, 4);   // poucos checkpoints: força o afinamento
+
+        List<Snapshot> states = new ArrayList<>();
+        states.add(cpu.snapshot());
+        while (h.step() == CPU.RUNNING) states.add(cpu.snapshot());
+        states.add(cpu.snapshot());
+        assertEquals(33, cpu.ACC);
+
+        for (long p = h.position(); p > 0; p--) {
+            assertTrue(h.stepBack());
+            assertSameState(states.get((int) p - 1), cpu);
+        }
+        assertFalse(h.stepBack());
+
+        // Reexecutar para frente reaproveita as entradas gravadas
+        while (h.step() == CPU.RUNNING) { }
+        assertEquals(33, cpu.ACC);
+        assertEquals(0, io.missingInputs);
+
+        // Volta até o último "JN FIM" (endereço 10), executado antes de LOAD Q e HALT
+        long end = h.position();
+        boolean[] addrs = new boolean[256];
+        addrs[10] = true;
+        assertTrue(h.runBackTo(addrs));
+        assertEquals(10, cpu.PC);
+        assertEquals(end - 3, h.position());
+        assertSameState(states.get((int) end - 3), cpu);
+    }
+
+    @Test
+    void run_em_lotes_gera_o_mesmo_historico_que_step() {
+        String prog = CPUTest.DIVISAO.replace("DEC 17", "DEC 120").replace("DEC 5", "DEC 1");
+        CPU ref = new CPU();
+        ref.load(Assembler.assembleWithVars(prog, 200));
+        List<Snapshot> states = new ArrayList<>();
+        states.add(ref.snapshot());
+        while (ref.stepQuiet() == CPU.RUNNING) states.add(ref.snapshot());
+        states.add(ref.snapshot());
+
+        CPU cpu = new CPU();
+        cpu.load(Assembler.assembleWithVars(prog, 200));
+        History h = new History(cpu, 8, 4);
+        int st;
+        while ((st = h.run(37)) == CPU.BUDGET) { }
+        assertEquals(CPU.HALTED, st);
+        assertEquals(states.size() - 1, h.position());
+        assertEquals(120, cpu.ACC);
+
+        for (long p = h.position(); p > 0; p -= 97) {
+            h.seek(p);
+            assertSameState(states.get((int) p), cpu);
+        }
+    }
+
+    @Test
+    void reexecucao_nao_passa_pelos_ganchos() {
+        CPU cpu = new CPU();
+        cpu.load(Assembler.assembleWithVars(CPUTest.DIVISAO, 200));
+        cpu.trace = new TraceBuffer(64);
+        cpu.counters = new PerfCounters();
+        cpu.profiler = new Profiler();
+        History h = new History(cpu, 4, 64);
+        while (h.step() == CPU.RUNNING) { }
+        long traced = cpu.trace.total();
+        long counted = cpu.counters.instructions;
+        long profiled = cpu.profiler.total;
+
+        // 4 é um checkpoint: o passo 4 (STORE A) é reexecutado mesmo assim
+        h.seek(4);
+        assertEquals(200, cpu.lastWriteAddr());
+        assertEquals(-1, cpu.lastReadAddr());
+        h.seek(3);
+        assertEquals(traced, cpu.trace.total());
+        assertEquals(counted, cpu.counters.instructions);
+        assertEquals(profiled, cpu.profiler.total);
+    }
+
+    private static void assertSameState(Snapshot s, CPU cpu) {
+        assertEquals(s.PC, cpu.PC);
+        assertEquals(s.ACC, cpu.ACC);
+        assertEquals(s.Z, cpu.Z);
+        assertEquals(s.N, cpu.N);
+        assertEquals(s.halted, cpu.halted);
+        for (int a = 0; a < 256; a++) assertEquals(s.mem(a), cpu.mem.get(a));
+    }
+}
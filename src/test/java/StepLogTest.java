@@ -0,0 +1,45 @@
+package cpu;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StepLogTest {
+
+    @Test
+    void anel_descarta_as_mais_antigas_e_grava_tudo_no_arquivo(@TempDir Path dir) throws Exception {
+        TraceBuffer trace = new TraceBuffer(4);
+        trace.add(0, CPU.LOADI, 7, 7, 0, 0, -1, -1);
+        long ev = trace.last();
+
+        StepLog log = new StepLog(3);
+        log.addNote("início");
+        Path file = dir.resolve("log.txt");
+        log.record(file);
+        for (int i = 0; i < 10; i++) log.addStep(ev);
+        log.addNote("fim");
+        log.stopRecording();
+
+        assertEquals(3, log.size());
+        assertEquals(12, log.total());
+        assertTrue(log.isStep(0));
+        assertEquals(TraceBuffer.text(ev), log.text(1));
+        assertEquals("fim", log.text(2));
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(12, lines.size());
+        assertEquals("início", lines.get(0));
+        assertEquals(TraceBuffer.text(ev), lines.get(5));
+        assertEquals("fim", lines.get(11));
+
+        log.clear();
+        assertEquals(0, log.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> log.text(0));
+    }
+}
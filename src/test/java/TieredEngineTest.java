@@ -0,0 +1,119 @@
+package cpu;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TieredEngineTest {
+
+    @Test
+    void blocos_compilados_equivalem_ao_interpretador() {
+        Assembler.AsmOut out = Assembler.assembleWithVars(CPUTest.DIVISAO.replace("DEC 17", "DEC 120").replace("DEC 5", "DEC 3"), 200);
+
+        CPU ref = new CPU();
+        ref.load(out);
+        assertEquals(CPU.HALTED, ref.run(1_000_000));
+
+        CPU cpu = new CPU();
+        cpu.load(out);
+        TieredEngine jit = new TieredEngine(cpu, 2);
+        assertEquals(CPU.HALTED, jit.run(1_000_000));
+
+        assertTrue(jit.compiledCount > 0);
+        assertEquals(ref.lastRunSteps, jit.lastRunSteps);
+        assertEquals(40, cpu.ACC);
+        assertEquals(ref.PC, cpu.PC);
+        assertEquals(ref.Z, cpu.Z);
+        assertEquals(ref.N, cpu.N);
+        assertArrayEquals(ref.mem.toArray(), cpu.mem.toArray());
+    }
+
+    @Test
+    void store_em_codigo_compilado_desotimiza() {
+        // O laço incrementa R e reescreve o operando do próprio ADDI a cada volta
+        String prog = "LOOP:\n" +
+                "LOAD R\n" +
+                "ADDI 1\n" +
+                "STORE R\n" +
+                "LOAD K\n" +
+                "ADDI 1\n" +
+                "STORE K\n" +
+                "STORE 3\n" +
+                "SUBI 20\n" +
+                "JZ FIM\n" +
+                "JMP LOOP\n" +
+                "FIM:\n" +
+                "HALT\n" +
+                "R, DEC 0\nK, DEC 0";
+        Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
+
+        CPU ref = new CPU();
+        ref.load(out);
+        while (!ref.halted) ref.step();
+
+        CPU cpu = new CPU();
+        cpu.load(out);
+        TieredEngine jit = new TieredEngine(cpu, 1);
+        assertEquals(CPU.HALTED, jit.run(100_000));
+
+        assertTrue(jit.deoptCount > 0);
+        assertArrayEquals(ref.mem.toArray(), cpu.mem.toArray());
+        assertEquals(ref.ACC, cpu.ACC);
+    }
+
+    @Test
+    void store_compilado_invalida_a_pre_decodificacao() {
+        // Mesmo laço auto-modificável, com a cache de pré-decodificação ligada:
+        // o bloco é interpretado (e decodificado) antes de ser compilado
+        String prog = "LOOP:\n" +
+                "LOAD K\n" +
+                "ADDI 1\n" +
+                "STORE K\n" +
+                "STORE 11\n" +
+                "LOAD R\n" +
+                "ADDI 0\n" +
+                "STORE R\n" +
+                "LOAD K\n" +
+                "SUBI 20\n" +
+                "JZ FIM\n" +
+                "JMP LOOP\n" +
+                "FIM:\n" +
+                "HALT\n" +
+                "R, DEC 0\nK, DEC 0";
+        Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
+
+        CPU ref = new CPU();
+        ref.load(out);
+        while (!ref.halted) ref.step();
+
+        CPU cpu = new CPU();
+        cpu.setPredecode(true);
+        cpu.load(out);
+        TieredEngine jit = new TieredEngine(cpu, 3);
+        assertEquals(CPU.HALTED, jit.run(100_000));
+
+        assertTrue(jit.compiledCount > 0);
+        assertArrayEquals(ref.mem.toArray(), cpu.mem.toArray());
+        assertEquals(ref.ACC, cpu.ACC);
+    }
+
+    @Test
+    void orcamento_exato_em_laco_compilado() {
+        String prog = "LOOP:\nLOAD X\nADDI 1\nSTORE X\nJMP LOOP\nX, DEC 0";
+        Assembler.AsmOut out = Assembler.assembleWithVars(prog, 200);
+
+        CPU ref = new CPU();
+        ref.load(out);
+        assertEquals(CPU.BUDGET, ref.run(100_003));
+
+        CPU cpu = new CPU();
+        cpu.load(out);
+        TieredEngine jit = new TieredEngine(cpu);
+        assertEquals(CPU.BUDGET, jit.run(100_003));
+
+        assertEquals(100_003, jit.lastRunSteps);
+        assertEquals(ref.PC, cpu.PC);
+        assertEquals(ref.ACC, cpu.ACC);
+        assertEquals(ref.IR, cpu.IR);
+        assertArrayEquals(ref.mem.toArray(), cpu.mem.toArray());
+    }
+}
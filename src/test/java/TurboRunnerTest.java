@@ -0,0 +1,94 @@
+package cpu;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TurboRunnerTest {
+
+    @Test
+    void roda_ate_o_halt_e_avisa_o_termino() throws Exception {
+        String prog = CPUTest.DIVISAO.replace("DEC 17", "DEC 120").replace("DEC 5", "DEC 1");
+        CPU cpu = new CPU();
+        cpu.load(Assembler.assembleWithVars(prog, 200));
+        History h = new History(cpu);
+        CountDownLatch done = new CountDownLatch(1);
+        TurboRunner t = new TurboRunner(cpu, h, 30, st -> done.countDown());
+        t.start();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        t.stop();
+
+        assertEquals(CPU.HALTED, t.status());
+        assertEquals(h.position(), t.steps());
+        assertEquals(120, t.latest().ACC);
+        assertEquals(120, cpu.ACC);
+        assertTrue(h.stepBack());   // o histórico continua utilizável
+    }
+
+    @Test
+    void respeita_o_ritmo_e_a_pausa() throws Exception {
+        CPU cpu = new CPU();
+        cpu.load(Assembler.assembleWithVars("LOOP:\nJMP LOOP", 200));
+        History h = new History(cpu);
+        TurboRunner t = new TurboRunner(cpu, h, 100, null);
+        t.setRate(1000);
+        t.start();
+        Thread.sleep(300);
+        t.pause();
+        Thread.sleep(100);
+        long paused = t.steps();
+        assertTrue(paused > 0 && paused <= 500, "passos: " + paused);
+        Thread.sleep(100);
+        assertEquals(paused, t.steps());
+
+        t.resume();
+        t.setRate(0);
+        Thread.sleep(100);
+        t.stop();
+        assertTrue(t.steps() > paused);
+        assertEquals(CPU.BUDGET, t.status());
+        assertEquals(h.position(), t.steps());
+    }
+
+    @Test
+    void para_antes_do_in_sem_ler_na_thread_do_turbo() throws Exception {
+        CPU cpu = new CPU();
+        Thread[] reader = new Thread[1];
+        cpu.io = new IODevice() {
+            @Override public int read() { reader[0] = Thread.currentThread(); return 9; }
+            @Override public void write(int value) { }
+        };
+        History h = new History(cpu);
+        // Caminho rápido, pré-decodificado e instrumentado
+        for (int mode = 0; mode < 3; mode++) {
+            cpu.setPredecode(mode == 1);
+            cpu.trace = mode == 2 ? new TraceBuffer(16) : null;
+            cpu.load(Assembler.assembleWithVars("LOADI 3\nADDI 4\nIN\nOUT\nHALT", 200));
+            h.reset();
+            CountDownLatch done = new CountDownLatch(1);
+            TurboRunner t = new TurboRunner(cpu, h, 30, st -> done.countDown());
+            t.start();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            t.stop();
+
+            assertEquals(CPU.INPUT, t.status());
+            assertNull(reader[0]);
+            assertFalse(cpu.halted);
+            assertFalse(cpu.stopAtInput);
+            assertEquals(4, cpu.PC);            // no IN, ainda não executado
+            assertEquals(CPU.ADDI, cpu.IR);
+            assertEquals(7, cpu.ACC);
+            assertEquals(2, h.position());
+
+            // Quem chamou executa o IN na própria thread e o histórico continua contando
+            assertEquals(CPU.RUNNING, h.step());
+            assertSame(Thread.currentThread(), reader[0]);
+            assertEquals(9, cpu.ACC);
+            assertEquals(3, h.position());
+            reader[0] = null;
+        }
+    }
+}